@@ -0,0 +1,51 @@
+package com.zhsan.bench;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.zhsan.gameobject.GameScenario;
+import com.zhsan.headless.HeadlessSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advancing one day, early in the game and after the scenario has developed for a while. Every iteration starts
+ * from the same saved state of that day.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AdvanceDayBenchmark {
+
+    @Param({"1", "500"})
+    public int day;
+
+    private FileHandle snapshot;
+    private GameScenario scen;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        BenchmarkScenarios.init();
+        snapshot = BenchmarkScenarios.createTempDirectory();
+        BenchmarkScenarios.newGameAtDay(day).save(snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        snapshot.deleteDirectory();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        scen = BenchmarkScenarios.load(snapshot);
+    }
+
+    @Benchmark
+    public GameScenario advanceDay() {
+        scen.advanceDay(HeadlessSimulator.NO_ANIMATION);
+        return scen;
+    }
+
+}
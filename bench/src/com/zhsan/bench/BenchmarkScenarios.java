@@ -0,0 +1,68 @@
+package com.zhsan.bench;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.zhsan.common.GlobalVariables;
+import com.zhsan.gameobject.GameScenario;
+import com.zhsan.headless.HeadlessSimulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Scenarios for benchmarks, all based on the bundled 194QXGJ 7 scenario so that results are comparable between
+ * commits. Benchmarks run from the assets directory.
+ */
+final class BenchmarkScenarios {
+
+    static final String SCENARIO = "194QXGJ 7";
+    static final int PLAYER_FACTION = 1;
+    // the scenario has no seed of its own, and would be given a different one in each new game
+    static final long RANDOM_SEED = 0x194L;
+
+    private static boolean initialized = false;
+
+    private BenchmarkScenarios() {}
+
+    static synchronized void init() {
+        if (initialized) return;
+        System.setProperty("user.home", ".");
+        new HeadlessApplication(new ApplicationAdapter() {}, new HeadlessApplicationConfiguration());
+        GlobalVariables.load();
+        initialized = true;
+    }
+
+    static GameScenario newGame() {
+        GameScenario scen = new GameScenario(Gdx.files.external(GameScenario.SCENARIO_PATH + SCENARIO), true, PLAYER_FACTION);
+        scen.getGameData().setRandomSeed(RANDOM_SEED);
+        return scen;
+    }
+
+    static GameScenario load(FileHandle save) {
+        return new GameScenario(save, false, PLAYER_FACTION);
+    }
+
+    /**
+     * A new game advanced to the given day, without AI and with a fixed random seed so that it is the same in every run
+     */
+    static GameScenario newGameAtDay(int day) {
+        GameScenario scen = newGame();
+        for (int i = 1; i < day; ++i) {
+            scen.advanceDay(HeadlessSimulator.NO_ANIMATION);
+        }
+        return scen;
+    }
+
+    static FileHandle createTempDirectory() {
+        try {
+            return new FileHandle(Files.createTempDirectory("zhsan-bench").toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
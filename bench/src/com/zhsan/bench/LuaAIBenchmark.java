@@ -0,0 +1,44 @@
+package com.zhsan.bench;
+
+import com.zhsan.gameobject.Faction;
+import com.zhsan.gameobject.GameScenario;
+import com.zhsan.lua.LuaAI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running the Lua AI of the faction with the most architectures, as it runs every day once its scripts are loaded.
+ * The first run, which creates the VM and compiles the scripts, is made before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LuaAIBenchmark {
+
+    private GameScenario scen;
+    private Faction faction;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        BenchmarkScenarios.init();
+        scen = BenchmarkScenarios.newGame();
+        faction = scen.getFactions().max((x, y) -> Integer.compare(x.getArchitectures().size(), y.getArchitectures().size()));
+        LuaAI.runFactionAi(scen, faction);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        LuaAI.dispose();
+    }
+
+    @Benchmark
+    public GameScenario runFactionAi() {
+        LuaAI.runFactionAi(scen, faction);
+        return scen;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.zhsan.bench;
+
+import com.zhsan.common.Point;
+import com.zhsan.gameobject.Architecture;
+import com.zhsan.gameobject.GameScenario;
+import com.zhsan.gameobject.pathfinding.ZhPathFinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path finding between architectures for any military kind, from the architecture with the smallest id to its
+ * closest architecture, and to the farthest one reachable across the map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PathFinderBenchmark {
+
+    private static final int MAX_COST = 30;
+
+    private ZhPathFinder pathFinder;
+    private Point from, near, far;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkScenarios.init();
+        GameScenario scen = BenchmarkScenarios.newGame();
+        pathFinder = new ZhPathFinder(scen, scen.getGameMap(), null);
+
+        Architecture start = scen.getArchitectures().getFirst();
+        from = start.getPosition();
+        int nearDistance = Integer.MAX_VALUE, farDistance = -1;
+        for (Architecture a : scen.getArchitectures()) {
+            if (a == start) continue;
+            Point p = a.getPosition();
+            int distance = from.taxiDistanceTo(p);
+            if (distance < nearDistance) {
+                nearDistance = distance;
+                near = p;
+            }
+            if (distance > farDistance && pathFinder.findPath(from, p) != null) {
+                farDistance = distance;
+                far = p;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Point> findPathShort() {
+        return pathFinder.findPath(from, near);
+    }
+
+    @Benchmark
+    public List<Point> findPathCrossMap() {
+        return pathFinder.findPath(from, far);
+    }
+
+    @Benchmark
+    public List<Point> getPointsWithinCost() {
+        return pathFinder.getPointsWithinCost(from, MAX_COST);
+    }
+
+}
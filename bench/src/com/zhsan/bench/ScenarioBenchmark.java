@@ -0,0 +1,52 @@
+package com.zhsan.bench;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.zhsan.gameobject.GameScenario;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a new game, and saving then loading it again, as CSV files and as a binary snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScenarioBenchmark {
+
+    private GameScenario scen;
+    private FileHandle saveDir;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkScenarios.init();
+        scen = BenchmarkScenarios.newGame();
+        saveDir = BenchmarkScenarios.createTempDirectory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveDir.deleteDirectory();
+    }
+
+    @Benchmark
+    public GameScenario newGame() {
+        return BenchmarkScenarios.newGame();
+    }
+
+    @Benchmark
+    public GameScenario saveAndLoadCSV() {
+        scen.saveAsCSV(saveDir);
+        return BenchmarkScenarios.load(saveDir);
+    }
+
+    @Benchmark
+    public GameScenario saveAndLoadBinary() {
+        scen.save(saveDir);
+        return BenchmarkScenarios.load(saveDir);
+    }
+
+}
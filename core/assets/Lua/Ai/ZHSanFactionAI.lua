@@ -1,6 +1,7 @@
 -- entry point of ZHSan2 AI
 -- `faction` contains current faciton information
 -- `scenario` contains various scenario information
+-- The scripts are loaded once per faction, and factionAI() is then called every day
 -- All output will be written to Lua/AI/Logs/Faction<ID>.log files
 
 -- Additionally, you can use dump(var) function to print the content of the variable, for debugging and inspection
@@ -8,8 +9,11 @@
 
 dofile(PATH .. "sectionAI.lua")
 
-print(scenario.getGameDateYear() .. "年" .. scenario.getGameDateMonth() .. "月" .. scenario.getGameDateDay() .. "日")
+-- called once a day, after the scripts have been loaded
+function factionAI()
+    print(scenario.getGameDateYear() .. "年" .. scenario.getGameDateMonth() .. "月" .. scenario.getGameDateDay() .. "日")
 
-for i, item in pairs(faction.getSections()) do
-    sectionAI(item)
+    for i, item in pairs(faction.getSections()) do
+        sectionAI(item)
+    end
 end
\ No newline at end of file
@@ -59,6 +59,7 @@ public final class GlobalVariables {
     public static float reactDamageFactor = 0.5f;
 
     public static long aiTimeout = 20;
+    public static long aiInstructionBudget = 0;
 
     public static float personMovingSpeed = 8.0f;
     public static float militaryMovingSpeed = 0.2f;
@@ -73,6 +74,12 @@ public final class GlobalVariables {
     public static int maxPathLengthAsConnected2 = 120;
     public static int leastDistanceFromArchitecturesAsConnected = 8;
 
+    public static boolean parallelDayTick = true;
+
+    public static int autoSaveDays = 10;
+
+    public static boolean compileLuaAi = false;
+
     public static void load() {
         FileHandle f = Gdx.files.external(Paths.DATA + "GlobalVariables.xml");
 
@@ -102,6 +109,7 @@ public final class GlobalVariables {
             gainFoodPerPopulation = Float.parseFloat(XmlHelper.loadAttribute(node, "gainFoodPerPopulation"));
             internalCost = Integer.parseInt(XmlHelper.loadAttribute(node, "internalCost"));
             aiTimeout = Long.parseLong(XmlHelper.loadAttribute(node, "aiTimeout"));
+            aiInstructionBudget = Long.parseLong(XmlHelper.loadAttribute(node, "aiInstructionBudget"));
             recruitCostFactor = Float.parseFloat(XmlHelper.loadAttribute(node, "recruitCostFactor"));
             recruitEfficiency = Float.parseFloat(XmlHelper.loadAttribute(node, "recruitEfficiency"));
             recruitByLeaderEfficiency = Float.parseFloat(XmlHelper.loadAttribute(node, "recruitByLeaderEfficiency"));
@@ -127,6 +135,9 @@ public final class GlobalVariables {
             maxPathLengthAsConnected2 = Integer.parseInt(XmlHelper.loadAttribute(node, "maxPathLengthAsConnected2"));
             leastDistanceFromArchitecturesAsConnected = Integer.parseInt(XmlHelper.loadAttribute(node, "leastDistanceFromArchitecturesAsConnected"));
             militaryMovingSpeed = Float.parseFloat(XmlHelper.loadAttribute(node, "militaryMovingSpeed"));
+            parallelDayTick = Boolean.parseBoolean(XmlHelper.loadAttribute(node, "parallelDayTick"));
+            autoSaveDays = Integer.parseInt(XmlHelper.loadAttribute(node, "autoSaveDays"));
+            compileLuaAi = Boolean.parseBoolean(XmlHelper.loadAttribute(node, "compileLuaAi"));
         } catch (Exception e) {
             throw new FileReadException(Paths.DATA + "GlobalVariables.xml", e);
         }
@@ -27,19 +27,28 @@ public final class Point {
     }
 
     public static Point fromCSV(String s) {
-        String[] t = s.split("\\s");
-        return new Point(
-                Integer.parseInt(t[0]),
-                Integer.parseInt(t[1])
-        );
+        return fromCoordinates(XmlHelper.loadIntArrayFromXml(s));
+    }
+
+    /**
+     * @param t x and y of the point
+     */
+    public static Point fromCoordinates(int[] t) {
+        return new Point(t[0], t[1]);
     }
 
     public static List<Point> fromCSVList(String s) {
-        List<Point> points = new ArrayList<>();
-        String[] t = s.trim().split("\\s");
+        return fromCoordinatesList(XmlHelper.loadIntArrayFromXml(s));
+    }
+
+    /**
+     * @param t x and y of each point in turn
+     */
+    public static List<Point> fromCoordinatesList(int[] t) {
+        List<Point> points = new ArrayList<>(t.length / 2);
 
         for (int i = 0; i < t.length; i += 2) {
-            points.add(new Point(Integer.parseInt(t[i]), Integer.parseInt(t[i + 1])));
+            points.add(new Point(t[i], t[i + 1]));
         }
 
         return points;
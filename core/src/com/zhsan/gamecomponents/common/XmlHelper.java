@@ -7,6 +7,7 @@ import com.zhsan.common.exception.FileReadException;
 import org.w3c.dom.Node;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -45,15 +46,34 @@ public class XmlHelper {
     }
 
     public static List<Integer> loadIntegerListFromXml(String s) {
-        String[] split = s.split("\\s");
-        List<Integer> result = new ArrayList<>();
-        for (String i : split) {
-            if (i.isEmpty()) continue;
-            result.add(Integer.parseInt(i));
+        int[] values = loadIntArrayFromXml(s);
+        List<Integer> result = new ArrayList<>(values.length);
+        for (int i : values) {
+            result.add(i);
         }
         return result;
     }
 
+    /**
+     * Parse whitespace separated integers, without splitting the string
+     */
+    public static int[] loadIntArrayFromXml(String s) {
+        int[] result = new int[8];
+        int count = 0;
+        int length = s.length();
+        for (int i = 0; i < length; ) {
+            while (i < length && Character.isWhitespace(s.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && !Character.isWhitespace(s.charAt(i))) i++;
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = Integer.parseInt(s.substring(start, i));
+        }
+        return Arrays.copyOf(result, count);
+    }
+
     public static String saveIntegerListToXml(Collection<Integer> list) {
         return list.stream().map(String::valueOf).collect(Collectors.joining(" "));
     }
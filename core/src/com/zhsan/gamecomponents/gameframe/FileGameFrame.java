@@ -18,6 +18,7 @@ import com.zhsan.gamecomponents.common.WidgetUtility;
 import com.zhsan.gamecomponents.common.XmlHelper;
 import com.zhsan.gamecomponents.common.textwidget.SelectableTextWidget;
 import com.zhsan.gamecomponents.common.textwidget.TextWidget;
+import com.zhsan.gameobject.GameScenario;
 import com.zhsan.gameobject.GameSurvey;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.Nullable;
@@ -127,6 +128,7 @@ public class FileGameFrame extends GameFrame {
     }
 
     private void populateFilePane() {
+        GameScenario.finishSaves();
         FileHandle[] saveFiles = Gdx.files.external(SAVE_FILE_PATH).list();
 
         fileList.clear();
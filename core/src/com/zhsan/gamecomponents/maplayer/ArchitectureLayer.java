@@ -2,12 +2,13 @@ package com.zhsan.gamecomponents.maplayer;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.zhsan.common.Paths;
 import com.zhsan.common.Point;
 import com.zhsan.gameobject.Architecture;
 import com.zhsan.gameobject.ArchitectureKind;
+import com.zhsan.gameobject.GameScenario;
 import com.zhsan.gameobject.GameSurvey;
 import com.zhsan.screen.GameScreen;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -15,9 +16,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Created by Peter on 4/8/2015.
@@ -58,54 +57,72 @@ public class ArchitectureLayer implements MapLayer {
         }
     }
 
-    private Map<Pair<ArchitectureKind, ArchitectureImageQuantifier>, Texture> architectureImages = new HashMap<>();
-    private Map<String, Texture> architectureNameImages = new HashMap<>();
+    private Map<Pair<ArchitectureKind, ArchitectureImageQuantifier>, TextureRegion> architectureImages = new HashMap<>();
+    private Map<String, TextureRegion> architectureNameImages = new HashMap<>();
 
+    // the shape of an architecture never changes
+    private Map<Architecture, ArchitectureImageQuantifier> architectureQuantifiers = new HashMap<>();
+    private List<Architecture> visibleArchitectures = new ArrayList<>();
+
+    private SpriteAtlas atlas;
     private float captionSize;
 
-    public ArchitectureLayer(float captionSize) {
+    public ArchitectureLayer(SpriteAtlas atlas, float captionSize) {
+        this.atlas = atlas;
         this.captionSize = captionSize;
     }
 
-    private Texture getArchitectureImage(String resSet, ArchitectureKind kind, ArchitectureImageQuantifier quantifier) {
-        if (!architectureImages.containsKey(new ImmutablePair<>(kind, quantifier))) {
-            String name = String.valueOf(kind.getId());
-            String defaultName = name;
-            switch (quantifier.quantifier) {
-                case DIAGONAL_SQUARE:
-                    name += "-d" + quantifier.size;
-                    break;
-                case HORIZONTAL:
-                    name += "-h" + quantifier.size;
-                    break;
-                case VERTICAL:
-                    name += "-v" + quantifier.size;
-                    break;
-                case DEFAULT:
-                    break;
-            }
-            name += ".png";
-            defaultName += ".png";
-            FileHandle f = Gdx.files.external(ARCHITECTURE_RES_PATH + resSet + File.separator + name);
+    private FileHandle getArchitectureImageFile(String resSet, ArchitectureKind kind, ArchitectureImageQuantifier quantifier) {
+        String name = String.valueOf(kind.getId());
+        String defaultName = name;
+        switch (quantifier.quantifier) {
+            case DIAGONAL_SQUARE:
+                name += "-d" + quantifier.size;
+                break;
+            case HORIZONTAL:
+                name += "-h" + quantifier.size;
+                break;
+            case VERTICAL:
+                name += "-v" + quantifier.size;
+                break;
+            case DEFAULT:
+                break;
+        }
+        name += ".png";
+        defaultName += ".png";
+        FileHandle f = Gdx.files.external(ARCHITECTURE_RES_PATH + resSet + File.separator + name);
+        if (!f.exists()) {
+            f = Gdx.files.external(ARCHITECTURE_RES_PATH + resSet + File.separator + defaultName);
             if (!f.exists()) {
-                f = Gdx.files.external(ARCHITECTURE_RES_PATH + resSet + File.separator + defaultName);
+                f = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + name);
                 if (!f.exists()) {
-                    f = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + name);
-                    if (!f.exists()) {
-                        f = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + defaultName);
-                    }
+                    f = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + defaultName);
                 }
             }
-            Texture t = new Texture(f);
-            architectureImages.put(new ImmutablePair<>(kind, quantifier), t);
         }
-        return architectureImages.get(new ImmutablePair<>(kind, quantifier));
+        return f;
+    }
+
+    private TextureRegion getArchitectureImage(String resSet, ArchitectureKind kind, ArchitectureImageQuantifier quantifier) {
+        return architectureImages.computeIfAbsent(new ImmutablePair<>(kind, quantifier),
+                x -> atlas.get(getArchitectureImageFile(resSet, kind, quantifier)));
+    }
+
+    private FileHandle getArchitectureNameImageFile(String resSet, String name) {
+        FileHandle fh = Gdx.files.external(ARCHITECTURE_RES_PATH + resSet + File.separator + CAPTION_FOLDER_NAME + File.separator + name + ".png");
+        if (!fh.exists()) {
+            fh = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + CAPTION_FOLDER_NAME + File.separator + name + ".png");
+        }
+        return fh;
+    }
+
+    private TextureRegion getArchitectureNameImage(String resSet, String name) {
+        return architectureNameImages.computeIfAbsent(name, x -> atlas.get(getArchitectureNameImageFile(resSet, name)));
     }
 
-    private Pair<ArchitectureImageQuantifier, Texture> getArchitectureImage(String resSet, ArchitectureKind kind, List<Point> shape) {
+    private ArchitectureImageQuantifier getArchitectureImageQuantifier(List<Point> shape) {
         if (shape.size() == 1) {
-            ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
-            return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+            return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
         }
 
         // is horizontal?
@@ -117,8 +134,7 @@ public class ArchitectureLayer implements MapLayer {
             }
         }
         if (horizontal) {
-            ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.HORIZONTAL, shape.size());
-            return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+            return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.HORIZONTAL, shape.size());
         }
 
         // is vertical?
@@ -130,8 +146,7 @@ public class ArchitectureLayer implements MapLayer {
             }
         }
         if (vertical) {
-            ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.VERTICAL, shape.size());
-            return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+            return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.VERTICAL, shape.size());
         }
 
         // is diagonal square?
@@ -159,89 +174,93 @@ public class ArchitectureLayer implements MapLayer {
                 }
                 if (count == 0) {
                     // all empty, a diagonal square ends.
-                    ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DIAGONAL_SQUARE, i);
-                    return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+                    return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DIAGONAL_SQUARE, i);
                 } else if (count < 4 * i) {
                     // not a diagonal square
-                    ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
-                    return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+                    return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
                 } // else 4 * i == count, diagonal square size increase, next iteration
             }
         }
 
         // no match
-        ArchitectureImageQuantifier q = new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
-        return new ImmutablePair<>(q, getArchitectureImage(resSet, kind, q));
+        return new ArchitectureImageQuantifier(ArchitectureImageQuantifier.Quantifier.DEFAULT, 0);
+    }
+
+    @Override
+    public void prepare(GameScenario scen, String resPack) {
+        for (Architecture a : scen.getArchitectures()) {
+            ArchitectureImageQuantifier quantifier =
+                    architectureQuantifiers.computeIfAbsent(a, x -> getArchitectureImageQuantifier(x.getLocations()));
+            atlas.add(getArchitectureImageFile(resPack, a.getKind(), quantifier));
+            atlas.add(getArchitectureNameImageFile(resPack, a.getNameImageName()));
+        }
     }
 
     @Override
     public void draw(GameScreen screen, String resPack, DrawingHelpers helpers, int zoom,
                      Batch batch, float parentAlpha) {
-        for (Architecture a : screen.getScenario().getArchitectures()) {
-            Point mapCenter = Point.getCenter(a.getLocations());
-            if (helpers.isMapLocationOnScreen(mapCenter)) {
-                // draw architecture main
-                Pair<ArchitectureImageQuantifier, Texture> image =
-                        getArchitectureImage(resPack, a.getKind(), a.getLocations());
-
-                Point main = helpers.getPixelFromMapLocation(mapCenter);
-                int mainX = main.x + zoom / 2;
-                int mainY = main.y + zoom / 2;
-                int mainSizeX, mainSizeY;
-                int mainSizeYNoOffset;
-                switch (image.getLeft().quantifier) {
-                    case DEFAULT:
-                        mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
-                        mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetLength()));
-                        mainSizeYNoOffset = zoom;
-                        break;
-                    case HORIZONTAL:
-                        mainSizeX = (int) (zoom * (image.getLeft().size + a.getKind().getDrawOffsetLength()));
-                        mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
-                        mainSizeYNoOffset = zoom;
-                        break;
-                    case VERTICAL:
-                        mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
-                        mainSizeY = (int) (zoom * (image.getLeft().size + a.getKind().getDrawOffsetLength()));
-                        mainSizeYNoOffset = zoom * image.getLeft().size;
-                        break;
-                    case DIAGONAL_SQUARE:
-                        mainSizeX = (int) (zoom * (image.getLeft().size * 2 - 1 + a.getKind().getDrawOffsetWidth()));
-                        mainSizeY = (int) (zoom * (image.getLeft().size * 2 - 1 + a.getKind().getDrawOffsetLength()));
-                        mainSizeYNoOffset = zoom * (image.getLeft().size * 2 - 1);
-                        break;
-                    default:
-                        mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
-                        mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetLength()));
-                        mainSizeYNoOffset = zoom;
-                        break;
-                }
-                batch.draw(image.getRight(), mainX - mainSizeX / 2, mainY - mainSizeY / 2, mainSizeX, mainSizeY);
-
-                // draw header
-                String name = a.getNameImageName();
-                if (!architectureNameImages.containsKey(name)) {
-                    FileHandle fh = Gdx.files.external(ARCHITECTURE_RES_PATH + resPack + File.separator + CAPTION_FOLDER_NAME + File.separator + name + ".png");
-                    if (!fh.exists()) {
-                        fh = Gdx.files.external(ARCHITECTURE_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + CAPTION_FOLDER_NAME + File.separator + name + ".png");
-                    }
-                    Texture nameImage = new Texture(fh);
-                    architectureNameImages.put(name, nameImage);
-                }
-                Texture nameImage = architectureNameImages.get(name);
-                int nameImageHeight = (int) (zoom * captionSize);
-                int nameImageWidth = (int) ((float) nameImage.getWidth() * nameImageHeight / nameImage.getHeight());
-                batch.draw(nameImage, mainX - nameImageWidth / 2, mainY + mainSizeYNoOffset / 2 - nameImageHeight / 2,
-                        nameImageWidth, nameImageHeight);
+        visibleArchitectures.clear();
+        screen.getScenario().forEachArchitectureIn(helpers.getVisibleMapLo(), helpers.getVisibleMapHi(),
+                visibleArchitectures::add);
+        // in the order of the scenario's list, so that overlapping images cover each other as before
+        visibleArchitectures.sort(Comparator.comparingInt(Architecture::getId));
+
+        for (Architecture a : visibleArchitectures) {
+            Point mapCenter = a.getCenter();
+            // draw architecture main
+            ArchitectureImageQuantifier quantifier =
+                    architectureQuantifiers.computeIfAbsent(a, x -> getArchitectureImageQuantifier(x.getLocations()));
+            TextureRegion image = getArchitectureImage(resPack, a.getKind(), quantifier);
+
+            Point main = helpers.getPixelFromMapLocation(mapCenter);
+            int mainX = main.x + zoom / 2;
+            int mainY = main.y + zoom / 2;
+            int mainSizeX, mainSizeY;
+            int mainSizeYNoOffset;
+            switch (quantifier.quantifier) {
+                case DEFAULT:
+                    mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
+                    mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetLength()));
+                    mainSizeYNoOffset = zoom;
+                    break;
+                case HORIZONTAL:
+                    mainSizeX = (int) (zoom * (quantifier.size + a.getKind().getDrawOffsetLength()));
+                    mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
+                    mainSizeYNoOffset = zoom;
+                    break;
+                case VERTICAL:
+                    mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
+                    mainSizeY = (int) (zoom * (quantifier.size + a.getKind().getDrawOffsetLength()));
+                    mainSizeYNoOffset = zoom * quantifier.size;
+                    break;
+                case DIAGONAL_SQUARE:
+                    mainSizeX = (int) (zoom * (quantifier.size * 2 - 1 + a.getKind().getDrawOffsetWidth()));
+                    mainSizeY = (int) (zoom * (quantifier.size * 2 - 1 + a.getKind().getDrawOffsetLength()));
+                    mainSizeYNoOffset = zoom * (quantifier.size * 2 - 1);
+                    break;
+                default:
+                    mainSizeX = (int) (zoom * (1 + a.getKind().getDrawOffsetWidth()));
+                    mainSizeY = (int) (zoom * (1 + a.getKind().getDrawOffsetLength()));
+                    mainSizeYNoOffset = zoom;
+                    break;
             }
+            batch.draw(image, mainX - mainSizeX / 2, mainY - mainSizeY / 2, mainSizeX, mainSizeY);
 
+            // draw header
+            TextureRegion nameImage = getArchitectureNameImage(resPack, a.getNameImageName());
+            int nameImageHeight = (int) (zoom * captionSize);
+            int nameImageWidth = (int) ((float) nameImage.getRegionWidth() * nameImageHeight / nameImage.getRegionHeight());
+            batch.draw(nameImage, mainX - nameImageWidth / 2, mainY + mainSizeYNoOffset / 2 - nameImageHeight / 2,
+                    nameImageWidth, nameImageHeight);
         }
     }
 
     @Override
     public void dispose() {
-        architectureImages.values().forEach(Texture::dispose);
-        architectureNameImages.values().forEach(Texture::dispose);
+        // the images belong to the atlas
+        architectureImages.clear();
+        architectureNameImages.clear();
+        architectureQuantifiers.clear();
     }
 
 }
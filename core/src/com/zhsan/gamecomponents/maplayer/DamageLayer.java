@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 /**
@@ -49,7 +51,7 @@ public class DamageLayer implements MapLayer {
     private Texture combatNumber;
     private int width, height;
 
-    private List<DamagePack> pendingPacks = new ArrayList<>();
+    private Queue<DamagePack> pendingPacks = new ConcurrentLinkedQueue<>();
     private List<PackTime> showingPacks = new ArrayList<>();
 
     public static final String RES_PATH = Paths.RESOURCES + "CombatNumber" + File.separator;
@@ -132,10 +134,9 @@ public class DamageLayer implements MapLayer {
 
     @Override
     public void draw(GameScreen screen, String resPack, DrawingHelpers helpers, int zoom, Batch batch, float parentAlpha) {
-        Iterator<DamagePack> itPack = pendingPacks.iterator();
-        while (itPack.hasNext()) {
-            showingPacks.add(new PackTime(itPack.next(), drawTime));
-            itPack.remove();
+        DamagePack pack;
+        while ((pack = pendingPacks.poll()) != null) {
+            showingPacks.add(new PackTime(pack, drawTime));
         }
         
         Iterator<PackTime> it = showingPacks.iterator();
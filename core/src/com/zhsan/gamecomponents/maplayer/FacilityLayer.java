@@ -2,12 +2,13 @@ package com.zhsan.gamecomponents.maplayer;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.zhsan.common.Paths;
 import com.zhsan.common.Point;
 import com.zhsan.gameobject.Facility;
 import com.zhsan.gameobject.FacilityKind;
+import com.zhsan.gameobject.GameScenario;
 import com.zhsan.gameobject.GameSurvey;
 import com.zhsan.screen.GameScreen;
 
@@ -22,34 +23,45 @@ public class FacilityLayer implements MapLayer {
 
     public static final String FACILITY_RES_PATH = Paths.RESOURCES + "Facility" + File.separator;
 
-    private Map<FacilityKind, Texture> facilityKindImages = new HashMap<>();
+    private Map<FacilityKind, TextureRegion> facilityKindImages = new HashMap<>();
 
-    private Texture getFacilityImage(String resSet, FacilityKind kind) {
-        if (!facilityKindImages.containsKey(kind)) {
-            FileHandle f = Gdx.files.external(FACILITY_RES_PATH + resSet + File.separator + kind.getId() + ".png");
-            if (!f.exists()) {
-                f = Gdx.files.external(FACILITY_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + kind.getId() + ".png");
-            }
+    private SpriteAtlas atlas;
 
-            Texture t = new Texture(f);
-            facilityKindImages.put(kind, t);
+    public FacilityLayer(SpriteAtlas atlas) {
+        this.atlas = atlas;
+    }
+
+    private FileHandle getFacilityImageFile(String resSet, FacilityKind kind) {
+        FileHandle f = Gdx.files.external(FACILITY_RES_PATH + resSet + File.separator + kind.getId() + ".png");
+        if (!f.exists()) {
+            f = Gdx.files.external(FACILITY_RES_PATH + GameSurvey.DEFAULT_RESOURCE_PACK + File.separator + kind.getId() + ".png");
         }
-        return facilityKindImages.get(kind);
+        return f;
+    }
+
+    private TextureRegion getFacilityImage(String resSet, FacilityKind kind) {
+        return facilityKindImages.computeIfAbsent(kind, k -> atlas.get(getFacilityImageFile(resSet, k)));
     }
 
     @Override
-    public void draw(GameScreen screen, String resPack, DrawingHelpers helpers, int zoom, Batch batch, float parentAlpha) {
-        for (Facility f : screen.getScenario().getFacilities()) {
-            if (helpers.isMapLocationOnScreen(f.getLocation())) {
-                Texture facilityImage = getFacilityImage(resPack, f.getKind());
-                Point px = helpers.getPixelFromMapLocation(f.getLocation());
-                batch.draw(facilityImage, px.x, px.y, zoom, zoom);
-            }
+    public void prepare(GameScenario scen, String resPack) {
+        for (Facility f : scen.getFacilities()) {
+            atlas.add(getFacilityImageFile(resPack, f.getKind()));
         }
     }
 
+    @Override
+    public void draw(GameScreen screen, String resPack, DrawingHelpers helpers, int zoom, Batch batch, float parentAlpha) {
+        screen.getScenario().forEachFacilityIn(helpers.getVisibleMapLo(), helpers.getVisibleMapHi(), f -> {
+            TextureRegion facilityImage = getFacilityImage(resPack, f.getKind());
+            Point px = helpers.getPixelFromMapLocation(f.getLocation());
+            batch.draw(facilityImage, px.x, px.y, zoom, zoom);
+        });
+    }
+
     @Override
     public void dispose() {
-        facilityKindImages.values().forEach(Texture::dispose);
+        // the images belong to the atlas
+        facilityKindImages.clear();
     }
 }
@@ -29,9 +29,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Peter on 19/3/2015.
@@ -56,13 +54,20 @@ public class MainMapLayer extends WidgetGroup {
 
     public static final String DATA_PATH = MAP_ROOT_PATH + "Data" + File.separator;
 
-    private Map<String, Texture> mapTiles = new HashMap<>();
+    private long mapTileMemory;
+    private int mapTileUploadsPerFrame, mapTileMaxLevel;
+    private MapTilePyramid mapTilePyramid;
+    private MapTileCache<MapTilePyramid.Tile> mapTiles;
+
+    private int spriteAtlasPageSize, spriteAtlasPadding;
+    private SpriteAtlas spriteAtlas;
 
     private int mapZoomMin, mapZoomMax, mapScrollBoundary, mapMouseScrollFactor;
     private float mapScrollFactor;
 
     private GameScreen screen;
     private Vector2 mapCameraPosition;
+    private Vector2 lastDrawnCameraPosition = new Vector2();
     private MoveStateX moveStateX = MoveStateX.IDLE;
     private MoveStateY moveStateY = MoveStateY.IDLE;
     private ZoomState zoomState = ZoomState.IDLE;
@@ -110,6 +115,15 @@ public class MainMapLayer extends WidgetGroup {
 
             captionSize = Float.parseFloat(XmlHelper.loadAttribute(dom.getElementsByTagName("Caption").item(0), "Size"));
 
+            Node tiles = dom.getElementsByTagName("MapTiles").item(0);
+            mapTileMemory = Long.parseLong(XmlHelper.loadAttribute(tiles, "TextureMemory")) * 1024 * 1024;
+            mapTileUploadsPerFrame = Integer.parseInt(XmlHelper.loadAttribute(tiles, "UploadsPerFrame"));
+            mapTileMaxLevel = Integer.parseInt(XmlHelper.loadAttribute(tiles, "MaxLevel"));
+
+            Node sprites = dom.getElementsByTagName("SpriteAtlas").item(0);
+            spriteAtlasPageSize = Integer.parseInt(XmlHelper.loadAttribute(sprites, "PageSize"));
+            spriteAtlasPadding = Integer.parseInt(XmlHelper.loadAttribute(sprites, "Padding"));
+
         } catch (Exception e) {
             throw new FileReadException(MAP_ROOT_PATH + "MapLayerData.xml", e);
         }
@@ -131,33 +145,61 @@ public class MainMapLayer extends WidgetGroup {
         Point mapCenter = screen.getScenario().getGameSurvey().getCameraPosition();
         this.mapCameraPosition = new Vector2(mapCenter.x * mapZoomMax, (map.getHeight() - 1 - mapCenter.y) * mapZoomMax);
 
+        mapTilePyramid = new MapTilePyramid(MAP_ROOT_PATH + map.getFileName() + File.separator, map.getImageCount(), mapTileMaxLevel);
+        mapTiles = new MapTileCache<>(mapTilePyramid::load, mapTileMemory, mapTileUploadsPerFrame);
+
         this.addListener(new InputEventListener());
         this.addListener(new GetScrollFocusWhenEntered(this));
         this.addListener(new GetKeyFocusWhenEntered(this));
 
-        troopAnimationLayer = new TroopAnimationLayer();
-        tileAnimationLayer = new TileAnimationLayer();
+        spriteAtlas = new SpriteAtlas(spriteAtlasPageSize, spriteAtlasPadding);
+        troopAnimationLayer = new TroopAnimationLayer(spriteAtlas);
+        tileAnimationLayer = new TileAnimationLayer(spriteAtlas);
         damageLayer = new DamageLayer();
-        mapLayers.add(new ArchitectureLayer(captionSize));
-        mapLayers.add(new FacilityLayer());
+        mapLayers.add(new ArchitectureLayer(spriteAtlas, captionSize));
+        mapLayers.add(new FacilityLayer(spriteAtlas));
         mapLayers.add(tileAnimationLayer);
         mapLayers.add(troopAnimationLayer);
         mapLayers.add(damageLayer);
         mapLayers.add(new HighlightLayer(screen.getScenario()));
+
+        String resPack = screen.getScenario().getGameSurvey().getResourcePackName();
+        mapLayers.forEach(l -> l.prepare(screen.getScenario(), resPack));
+        spriteAtlas.update();
     }
 
     public void resize(int width, int height) {
         mapInfo.setWidth(this.getWidth());
     }
 
-    private Texture getMapTile(String mapName, String fileName) {
-		// TODO async load tile images
-        if (mapTiles.containsKey(fileName)) {
-            return mapTiles.get(fileName);
+    /**
+     * Request the tile images just beyond the drawn ones in the direction the camera moved since the last frame
+     */
+    private void prefetchMapTiles(int level, int columnLo, int columnHi, int rowLo, int rowHi) {
+        int dx = (int) Math.signum(mapCameraPosition.x - lastDrawnCameraPosition.x);
+        int dy = (int) Math.signum(mapCameraPosition.y - lastDrawnCameraPosition.y);
+        lastDrawnCameraPosition.set(mapCameraPosition);
+
+        if (dx != 0) {
+            int column = dx > 0 ? columnHi + 1 : columnLo - 1;
+            for (int row = rowLo; row <= rowHi; ++row) {
+                prefetchMapTile(level, column, row);
+            }
         }
-        Texture t = new Texture(Gdx.files.external(MAP_ROOT_PATH + mapName + File.separator + fileName + ".jpg"));
-        mapTiles.put(fileName, t);
-        return t;
+        if (dy != 0) {
+            // rows are counted from the top
+            int row = dy > 0 ? rowLo - 1 : rowHi + 1;
+            for (int column = columnLo; column <= columnHi; ++column) {
+                prefetchMapTile(level, column, row);
+            }
+        }
+    }
+
+    private void prefetchMapTile(int level, int column, int row) {
+        int count = mapTilePyramid.getImageCount(level);
+        if (column < 0 || column >= count) return;
+        if (row < 0 || row >= count) return;
+        mapTiles.prefetch(new MapTilePyramid.Tile(level, column, row));
     }
 
     private void updateSurveyCameraPosition() {
@@ -227,10 +269,6 @@ public class MainMapLayer extends WidgetGroup {
         damageLayer.addDamagePack(pack);
     }
 
-    public boolean isNoPendingTroopAnimations() {
-        return troopAnimationLayer.isNoPendingTroopAnimations();
-    }
-
     @Override
     public void act(float delta) {
         super.act(delta);
@@ -269,6 +307,8 @@ public class MainMapLayer extends WidgetGroup {
 
     public void draw(Batch batch, float parentAlpha) {
         // draw map tiles
+        mapTiles.beginFrame();
+
         GameMap map = screen.getScenario().getGameMap();
         zoom = map.getZoom();
 
@@ -296,20 +336,43 @@ public class MainMapLayer extends WidgetGroup {
         imageLoX = xLo;
         imageLoY = yLo;
 
-        for (int y = yLo; y <= yHi; ++y) {
-            for (int x = xLo; x <= xHi; ++x) {
-                if (x < 0 || x >= map.getImageCount()) continue;
-                if (y < 0 || y >= map.getImageCount()) continue;
+        // map, from the level of the tile pyramid matching the zoom
+        int level = mapTilePyramid.getLevelFor((float) zoom / mapZoomMax);
+        int span = MapTilePyramid.getSpan(level);
+        int imageCount = map.getImageCount();
+
+        int visibleXLo = Math.max(xLo, 0), visibleXHi = Math.min(xHi, imageCount - 1);
+        int visibleYLo = Math.max(yLo, 0), visibleYHi = Math.min(yHi, imageCount - 1);
+        if (visibleXLo <= visibleXHi && visibleYLo <= visibleYHi) {
+            // rows of images are counted from the top of the map
+            int columnLo = visibleXLo / span, columnHi = visibleXHi / span;
+            int rowLo = (imageCount - 1 - visibleYHi) / span, rowHi = (imageCount - 1 - visibleYLo) / span;
+
+            for (int row = rowLo; row <= rowHi; ++row) {
+                for (int column = columnLo; column <= columnHi; ++column) {
+                    int px = (column * span - xLo) * imageSize - offsetX;
+                    int py = (imageCount - (row + 1) * span - yLo) * imageSize - offsetY;
+
+                    Texture texture = mapTiles.get(new MapTilePyramid.Tile(level, column, row));
+                    if (texture != null) {
+                        batch.draw(texture, px, py, imageSize * span, imageSize * span);
+                    }
+                }
+            }
+
+            prefetchMapTiles(level, columnLo, columnHi, rowLo, rowHi);
+        }
 
-                int px = (x - xLo) * imageSize - offsetX;
-                int py = (y - yLo) * imageSize - offsetY;
+        // grid
+        if (GlobalVariables.showGrid) {
+            for (int y = yLo; y <= yHi; ++y) {
+                for (int x = xLo; x <= xHi; ++x) {
+                    if (x < 0 || x >= map.getImageCount()) continue;
+                    if (y < 0 || y >= map.getImageCount()) continue;
 
-                // map
-                Texture texture = getMapTile(map.getFileName(), Integer.toString((map.getImageCount() - 1 - y) * map.getImageCount() + x));
-                batch.draw(texture, px, py, imageSize, imageSize);
+                    int px = (x - xLo) * imageSize - offsetX;
+                    int py = (y - yLo) * imageSize - offsetY;
 
-                // grid
-                if (GlobalVariables.showGrid) {
                     for (int i = 0; i < map.getTileInEachImage(); ++i) {
                         for (int j = 0; j < map.getTileInEachImage(); ++j) {
                             int mx = x * map.getTileInEachImage() + j;
@@ -342,7 +405,20 @@ public class MainMapLayer extends WidgetGroup {
         }
 
         String resPack = screen.getScenario().getGameSurvey().getResourcePackName();
+        // the same area as isMapLocationOnScreen
+        Point visibleLo = new Point(xLo * map.getTileInEachImage(), map.getHeight() + 1 - (yHi + 1) * map.getTileInEachImage());
+        Point visibleHi = new Point((xHi + 1) * map.getTileInEachImage(), map.getHeight() + 1 - yLo * map.getTileInEachImage());
         MapLayer.DrawingHelpers helpers = new MapLayer.DrawingHelpers() {
+            @Override
+            public Point getVisibleMapLo() {
+                return visibleLo;
+            }
+
+            @Override
+            public Point getVisibleMapHi() {
+                return visibleHi;
+            }
+
             @Override
             public boolean isMapLocationOnScreen(Point p) {
                 return xLo * map.getTileInEachImage() <= p.x && p.x <= (xHi + 1) * map.getTileInEachImage() &&
@@ -364,8 +440,9 @@ public class MainMapLayer extends WidgetGroup {
     }
 
     public void dispose() {
-        mapTiles.values().forEach(Texture::dispose);
+        mapTiles.dispose();
         mapLayers.forEach(com.zhsan.gamecomponents.maplayer.MapLayer::dispose);
+        spriteAtlas.dispose();
     }
 
     private Point mouseOnMapPosition() {
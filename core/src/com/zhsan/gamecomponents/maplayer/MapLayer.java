@@ -2,6 +2,7 @@ package com.zhsan.gamecomponents.maplayer;
 
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.zhsan.common.Point;
+import com.zhsan.gameobject.GameScenario;
 import com.zhsan.gameobject.Troop;
 import com.zhsan.screen.GameScreen;
 
@@ -13,6 +14,16 @@ import java.util.List;
 public interface MapLayer {
 
     interface DrawingHelpers {
+        /**
+         * @return Corner of the map area drawn with the lowest coordinates
+         */
+        Point getVisibleMapLo();
+
+        /**
+         * @return Corner of the map area drawn with the highest coordinates
+         */
+        Point getVisibleMapHi();
+
         boolean isMapLocationOnScreen(Point p);
         Point getPixelFromMapLocation(Point p);
     }
@@ -22,6 +33,13 @@ public interface MapLayer {
 
     public void dispose();
 
+    /**
+     * Add the sprite images the scenario is known to show to the atlas, before the first frame is drawn
+     */
+    public default void prepare(GameScenario scen, String resPack) {
+        // no-op
+    }
+
     public default void onStartSelectingLocation(Troop troop) {
         // no-op
     }
@@ -0,0 +1,181 @@
+package com.zhsan.gamecomponents.maplayer;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Streams the map tile images in. Images are loaded on a background thread in the order they are requested, and
+ * uploaded as textures on the GL thread, at most a few each frame. Once the textures take more memory than allowed,
+ * the ones least recently drawn are disposed.
+ * All methods except the loading itself are called on the GL thread.
+ * @param <K> Key of a tile image
+ */
+final class MapTileCache<K> {
+
+    /**
+     * Frames after which a request not repeated is dropped, e.g. for a tile scrolled past before it was decoded
+     */
+    private static final int STALE_FRAMES = 30;
+
+    private static final class Tile {
+        private final Texture texture;
+        private final long bytes;
+        private long lastDrawnFrame;
+
+        private Tile(Texture texture, long bytes) {
+            this.texture = texture;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Decoded<K> {
+        private final K key;
+        private final Pixmap pixmap;
+        private final GdxRuntimeException error;
+
+        private Decoded(K key, Pixmap pixmap, GdxRuntimeException error) {
+            this.key = key;
+            this.pixmap = pixmap;
+            this.error = error;
+        }
+    }
+
+    private final Function<K, Pixmap> loader;
+    private final long memoryCap;
+    private final int uploadsPerFrame;
+
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Map tile decoder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // key to the last frame the tile was asked for, for tiles requested but not yet uploaded
+    private final Map<K, Long> requested = new ConcurrentHashMap<>();
+    private final Queue<Decoded<K>> decoded = new ConcurrentLinkedQueue<>();
+
+    // in order of last use
+    private final LinkedHashMap<K, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsed;
+
+    private volatile long frame;
+
+    /**
+     * @param loader Loads the image of a tile, called on the background thread
+     * @param memoryCap Bytes of texture memory the tiles may take
+     * @param uploadsPerFrame Number of textures created from decoded images at most each frame
+     */
+    MapTileCache(Function<K, Pixmap> loader, long memoryCap, int uploadsPerFrame) {
+        this.loader = loader;
+        this.memoryCap = memoryCap;
+        this.uploadsPerFrame = uploadsPerFrame;
+    }
+
+    /**
+     * Upload the images decoded since the last frame, within the budget for each frame, and evict textures over the
+     * memory cap. Call once at the start of each frame.
+     */
+    void beginFrame() {
+        frame++;
+
+        for (int i = 0; i < uploadsPerFrame; ) {
+            Decoded<K> d = decoded.poll();
+            if (d == null) break;
+            if (d.error != null) {
+                throw d.error;
+            }
+            if (requested.remove(d.key) == null) {
+                // dropped while being decoded
+                d.pixmap.dispose();
+                continue;
+            }
+
+            long bytes = d.pixmap.getPixels().capacity();
+            Texture texture = new Texture(d.pixmap);
+            d.pixmap.dispose();
+
+            tiles.put(d.key, new Tile(texture, bytes));
+            memoryUsed += bytes;
+            i++;
+        }
+
+        Iterator<Tile> lru = tiles.values().iterator();
+        while (memoryUsed > memoryCap && lru.hasNext()) {
+            Tile t = lru.next();
+            if (t.lastDrawnFrame >= frame - 1) {
+                // everything from here on is on screen
+                break;
+            }
+            t.texture.dispose();
+            memoryUsed -= t.bytes;
+            lru.remove();
+        }
+    }
+
+    /**
+     * @return The texture of the tile image to draw now, or null if it is not loaded yet, in which case it is requested
+     */
+    Texture get(K key) {
+        Tile t = tiles.get(key);
+        if (t == null) {
+            request(key);
+            return null;
+        }
+        t.lastDrawnFrame = frame;
+        return t.texture;
+    }
+
+    /**
+     * Request the tile image to be loaded if it is not, without counting it as used
+     */
+    void prefetch(K key) {
+        if (!tiles.containsKey(key)) {
+            request(key);
+        }
+    }
+
+    private void request(K key) {
+        if (requested.put(key, frame) == null) {
+            decoder.execute(() -> decode(key));
+        }
+    }
+
+    private void decode(K key) {
+        Long lastRequested = requested.get(key);
+        if (lastRequested == null || frame - lastRequested > STALE_FRAMES) {
+            requested.remove(key);
+            return;
+        }
+        try {
+            decoded.add(new Decoded<>(key, loader.apply(key), null));
+        } catch (GdxRuntimeException e) {
+            decoded.add(new Decoded<>(key, null, e));
+        }
+    }
+
+    void dispose() {
+        decoder.shutdownNow();
+        try {
+            decoder.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // ignore
+        }
+        for (Decoded<K> d = decoded.poll(); d != null; d = decoded.poll()) {
+            if (d.pixmap != null) {
+                d.pixmap.dispose();
+            }
+        }
+        tiles.values().forEach(t -> t.texture.dispose());
+        tiles.clear();
+        memoryUsed = 0;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.zhsan.gamecomponents.maplayer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * The map's tile images at decreasing resolutions. Level 0 is the map's own images. Each image of a higher level
+ * covers 2x2 images of the level below in as many pixels as one of them, so that a zoomed out map is drawn from a few
+ * small textures. Images of higher levels are built from the level below the first time they are needed and cached on
+ * disk next to the map's images, until an image they are built from changes.
+ */
+final class MapTilePyramid {
+
+    private static final String LEVEL_PREFIX = "Level";
+
+    /**
+     * One image of the pyramid. Rows are counted from the top of the map, as in the file names of the map images.
+     */
+    static final class Tile {
+        final int level, column, row;
+
+        Tile(int level, int column, int row) {
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Tile tile = (Tile) o;
+            return level == tile.level && column == tile.column && row == tile.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(level, column, row);
+        }
+    }
+
+    private final String mapPath;
+    private final int imageCount;
+    private final int levels;
+
+    /**
+     * @param mapPath Directory of the map's images, ending with a separator
+     * @param imageCount Number of images in each row and each column of the map
+     * @param maxLevel Highest level to use
+     */
+    MapTilePyramid(String mapPath, int imageCount, int maxLevel) {
+        this.mapPath = mapPath;
+        this.imageCount = imageCount;
+
+        int levels = 1;
+        while (levels <= maxLevel && (1 << (levels - 1)) < imageCount) {
+            levels++;
+        }
+        this.levels = levels;
+    }
+
+    /**
+     * @param scale Size an image of level 0 is drawn at, relative to its size in pixels
+     * @return The highest level whose images are drawn at most at their size in pixels, so never magnified but for
+     * level 0, and shrunk by less than half but for the highest level
+     */
+    int getLevelFor(float scale) {
+        int level = 0;
+        while (level + 1 < levels && scale * (1 << (level + 1)) <= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return Number of images of level 0 each image of the level covers in each direction
+     */
+    static int getSpan(int level) {
+        return 1 << level;
+    }
+
+    /**
+     * @return Number of images in each row and each column of the level
+     */
+    int getImageCount(int level) {
+        return (imageCount + getSpan(level) - 1) / getSpan(level);
+    }
+
+    private FileHandle getFile(Tile t) {
+        int index = t.row * getImageCount(t.level) + t.column;
+        if (t.level == 0) {
+            return Gdx.files.external(mapPath + index + ".jpg");
+        } else {
+            return Gdx.files.external(mapPath + LEVEL_PREFIX + t.level + File.separator + index + ".png");
+        }
+    }
+
+    /**
+     * Load the image of the tile, building and caching it first if it is not cached or out of date.
+     * Called on the tile loading thread.
+     */
+    Pixmap load(Tile t) {
+        FileHandle file = getFile(t);
+        if (t.level == 0 || isUpToDate(t, file)) {
+            return new Pixmap(file);
+        }
+
+        Pixmap result = null;
+        int half = 0;
+        for (int i = 0; i < 2; ++i) {
+            for (int j = 0; j < 2; ++j) {
+                Tile source = new Tile(t.level - 1, t.column * 2 + i, t.row * 2 + j);
+                if (source.column >= getImageCount(source.level) || source.row >= getImageCount(source.level)) continue;
+
+                Pixmap pixmap = load(source);
+                if (result == null) {
+                    result = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+                    // parts beyond the edge of the map stay transparent
+                    result.setColor(0, 0, 0, 0);
+                    result.fill();
+                    half = pixmap.getWidth() / 2;
+                }
+                result.drawPixmap(pixmap, 0, 0, pixmap.getWidth(), pixmap.getHeight(), i * half, j * half, half, half);
+                pixmap.dispose();
+            }
+        }
+
+        try {
+            PixmapIO.writePNG(file, result);
+        } catch (GdxRuntimeException e) {
+            // the map directory is read only, build it again next time
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the cached image exists and is newer than every image of level 0 it covers, whether built from
+     * them directly or through the levels in between
+     */
+    private boolean isUpToDate(Tile t, FileHandle file) {
+        if (!file.exists()) return false;
+        int span = getSpan(t.level);
+        for (int row = t.row * span; row < Math.min((t.row + 1) * span, imageCount); ++row) {
+            for (int column = t.column * span; column < Math.min((t.column + 1) * span, imageCount); ++column) {
+                FileHandle sourceFile = getFile(new Tile(0, column, row));
+                if (!sourceFile.exists() || sourceFile.lastModified() > file.lastModified()) return false;
+            }
+        }
+        return true;
+    }
+
+}
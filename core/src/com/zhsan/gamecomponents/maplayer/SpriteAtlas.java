@@ -0,0 +1,96 @@
+package com.zhsan.gamecomponents.maplayer;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sprite images of the map layers packed into a few large textures, so that sprites drawn one after another seldom
+ * switch textures and flush the batch. The images the scenario is known to show are added before the first frame and
+ * uploaded together; images first needed later are packed into the same pages when they are drawn.
+ * All methods are called on the GL thread.
+ */
+final class SpriteAtlas {
+
+    private final PixmapPacker packer;
+    private final TextureAtlas atlas = new TextureAtlas();
+
+    // file path to region, for images already uploaded
+    private final Map<String, TextureRegion> regions = new HashMap<>();
+    // images too large for a page, kept in their own textures
+    private final List<Texture> ownTextures = new ArrayList<>();
+    private boolean dirty;
+
+    /**
+     * @param pageSize Width and height of each page in pixels
+     * @param padding Pixels left empty around each image
+     */
+    SpriteAtlas(int pageSize, int padding) {
+        packer = new PixmapPacker(pageSize, pageSize, Pixmap.Format.RGBA8888, padding, false);
+    }
+
+    /**
+     * Pack the image, without uploading it until the next {@link #update()} or {@link #get(FileHandle)}
+     */
+    void add(FileHandle file) {
+        String name = file.path();
+        if (regions.containsKey(name) || packer.getRect(name) != null) return;
+
+        Pixmap pixmap = new Pixmap(file);
+        if (pixmap.getWidth() + packer.getPadding() * 2 > packer.getPageWidth() ||
+                pixmap.getHeight() + packer.getPadding() * 2 > packer.getPageHeight()) {
+            Texture texture = new Texture(pixmap);
+            ownTextures.add(texture);
+            regions.put(name, new TextureRegion(texture));
+        } else {
+            packer.pack(name, pixmap);
+            dirty = true;
+        }
+        pixmap.dispose();
+    }
+
+    /**
+     * Upload the pages images were packed into since the last update
+     */
+    void update() {
+        if (!dirty) return;
+        packer.updateTextureAtlas(atlas, Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest, false);
+        dirty = false;
+    }
+
+    /**
+     * @return The region of the image, packing and uploading it first if it is not yet
+     */
+    TextureRegion get(FileHandle file) {
+        String name = file.path();
+        TextureRegion region = regions.get(name);
+        if (region == null) {
+            add(file);
+            update();
+            region = regions.get(name);
+            if (region == null) {
+                region = atlas.findRegion(name);
+                regions.put(name, region);
+            }
+        }
+        return region;
+    }
+
+    void dispose() {
+        // pages not yet uploaded only free their images along with their textures
+        update();
+        atlas.dispose();
+        ownTextures.forEach(Texture::dispose);
+        ownTextures.clear();
+        regions.clear();
+    }
+
+}
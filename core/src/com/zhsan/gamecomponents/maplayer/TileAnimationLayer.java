@@ -2,7 +2,6 @@ package com.zhsan.gamecomponents.maplayer;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.zhsan.common.Paths;
@@ -30,7 +29,13 @@ public class TileAnimationLayer implements MapLayer {
 
     private BlockingQueue<TileAnimator> runningAnimations = new ArrayBlockingQueue<>(1000);
 
-    private Map<Integer, Texture> tileImages = new HashMap<>();
+    private Map<Integer, TextureRegion> tileImages = new HashMap<>();
+
+    private SpriteAtlas atlas;
+
+    public TileAnimationLayer(SpriteAtlas atlas) {
+        this.atlas = atlas;
+    }
 
     public void showTileAnimation(Point location, TroopAnimation animation) {
         runningAnimations.add(new OneShotAnimator(location, animation));
@@ -39,8 +44,7 @@ public class TileAnimationLayer implements MapLayer {
     private TextureRegion getTileImage(TroopAnimation animation, int frame) {
         if (!tileImages.containsKey(animation.getId())) {
             FileHandle f = Gdx.files.external(RES_PATH + animation.getFileName());
-            Texture texture = new Texture(f);
-            tileImages.put(animation.getId(), texture);
+            tileImages.put(animation.getId(), atlas.get(f));
         }
         int frameIndex = frame / animation.getIdleFrame() % animation.getFrameCount();
         int spriteSize = animation.getSpriteSize();
@@ -69,7 +73,8 @@ public class TileAnimationLayer implements MapLayer {
 
     @Override
     public void dispose() {
-        tileImages.values().forEach(Texture::dispose);
+        // the images belong to the atlas
+        tileImages.clear();
     }
 
 }
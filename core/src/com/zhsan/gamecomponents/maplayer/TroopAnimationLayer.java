@@ -2,7 +2,6 @@ package com.zhsan.gamecomponents.maplayer;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.zhsan.common.Pair;
@@ -16,8 +15,8 @@ import com.zhsan.screen.GameScreen;
 
 import java.io.File;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Created by Peter on 8/8/2015.
@@ -57,11 +56,13 @@ public class TroopAnimationLayer implements MapLayer {
 
     public static final String TROOP_RES_PATH = Paths.RESOURCES + "Troop" + File.separator;
 
-    private Map<Pair<MilitaryKind, TroopAnimation>, Texture> troopImages = new HashMap<>();
+    private Map<Pair<MilitaryKind, TroopAnimation>, TextureRegion> troopImages = new HashMap<>();
+
+    private SpriteAtlas atlas;
 
     private int idleFrame = 0;
 
-    private BlockingQueue<PendingTroopAnimation> pendingTroopAnimations = new ArrayBlockingQueue<>(1000);
+    private BlockingQueue<PendingTroopAnimation> pendingTroopAnimations = new LinkedBlockingQueue<>();
 
     private List<Animator> runningAnimators = new ArrayList<>();
     private Set<Troop> runningTroops = new HashSet<>();
@@ -69,12 +70,20 @@ public class TroopAnimationLayer implements MapLayer {
     private Map<Troop, TroopTitleWidget> troopTitleWidgets = new HashMap<>();
     private Map<Troop, Double> troopDirections = new HashMap<>();
 
+    // reused every frame
+    private Map<Troop, Point> drawnTroops = new HashMap<>();
+    private Set<Troop> animatedTroops = new HashSet<>();
+
+    public TroopAnimationLayer(SpriteAtlas atlas) {
+        this.atlas = atlas;
+    }
+
     public void addPendingTroopAnimation(TroopAnimationLayer.PendingTroopAnimation animation) {
         pendingTroopAnimations.add(animation);
     }
 
-    public boolean isNoPendingTroopAnimations() {
-        return pendingTroopAnimations.size() == 0;
+    private FileHandle getTroopImageFile(String resSet, MilitaryKind kind, TroopAnimation animation) {
+        return Gdx.files.external(TROOP_RES_PATH + resSet + File.separator + kind.getId() + File.separator + animation.getFileName());
     }
 
     private TextureRegion getTroopImage(String resSet, Troop t, TroopAnimation.TroopAnimationKind animationKind, int frame, double dir, GameScenario scen) {
@@ -84,9 +93,7 @@ public class TroopAnimationLayer implements MapLayer {
         Pair<MilitaryKind, TroopAnimation> pair = new Pair<>(kind, animation);
 
         if (!troopImages.containsKey(pair)) {
-            FileHandle f = Gdx.files.external(TROOP_RES_PATH + resSet + File.separator + kind.getId() + File.separator + animation.getFileName());
-            Texture texture = new Texture(f);
-            troopImages.put(pair, texture);
+            troopImages.put(pair, atlas.get(getTroopImageFile(resSet, kind, animation)));
         }
 
         int frameIndex = frame / animation.getIdleFrame() % animation.getFrameCount();
@@ -96,6 +103,14 @@ public class TroopAnimationLayer implements MapLayer {
                 frameIndex * spriteSize, frameDirection * spriteSize, spriteSize, spriteSize);
     }
 
+    @Override
+    public void prepare(GameScenario scen, String resPack) {
+        TroopAnimation idle = scen.getTroopAnimations().get(TroopAnimation.TroopAnimationKind.IDLE.getId());
+        for (Troop t : scen.getTroops()) {
+            atlas.add(getTroopImageFile(resPack, t.getKind(), idle));
+        }
+    }
+
     @Override
     public void draw(GameScreen screen, String resPack, DrawingHelpers helpers,
                      int zoom, Batch batch, float parentAlpha) {
@@ -103,6 +118,7 @@ public class TroopAnimationLayer implements MapLayer {
             if (runningTroops.contains(animation.troop)) return;
             if (animation.troop.isDestroyed()) {
                 pendingTroopAnimations.remove(animation);
+                animation.onTroopAnimationDone.onTroopAnimationDone();
                 return;
             }
 
@@ -127,19 +143,21 @@ public class TroopAnimationLayer implements MapLayer {
             }
         });
 
-        Map<Troop, Point> drawnTroops = new HashMap<>();
+        drawnTroops.clear();
+        animatedTroops.clear();
 
-        Set<Troop> toDraw = new HashSet<>(screen.getScenario().getTroops().getAll());
         Iterator<Animator> animatorIterator = runningAnimators.iterator();
         while (animatorIterator.hasNext()) {
             Animator animator = animatorIterator.next();
 
             Troop t = animator.getAnimation().troop;
-            toDraw.remove(t);
+            animatedTroops.add(t);
 
             if (t.isDestroyed()) {
                 troopDirections.remove(t);
-                animatorIterator.remove(); 
+                animator.getAnimation().onTroopAnimationDone.onTroopAnimationDone();
+                animatorIterator.remove();
+                runningTroops.remove(t);
                 continue;
             }
 
@@ -163,25 +181,23 @@ public class TroopAnimationLayer implements MapLayer {
             }
         }
 
-        for (Troop t : toDraw) {
-            if (t.isDestroyed()) {
-                troopDirections.remove(t);
+        troopDirections.keySet().removeIf(Troop::isDestroyed);
+        screen.getScenario().forEachTroopIn(helpers.getVisibleMapLo(), helpers.getVisibleMapHi(), t -> {
+            if (animatedTroops.contains(t) || t.isDestroyed()) return;
+
+            double direction;
+            if (troopDirections.containsKey(t)) {
+                direction = troopDirections.get(t);
+            } else {
+                direction = 0;
             }
-            if (helpers.isMapLocationOnScreen(t.getPosition())) {
-                double direction;
-                if (troopDirections.containsKey(t)) {
-                    direction = troopDirections.get(t);
-                } else {
-                    direction = 0;
-                }
 
-                TextureRegion image = getTroopImage(resPack, t, TroopAnimation.TroopAnimationKind.IDLE, idleFrame, direction, screen.getScenario());
-                Point px = helpers.getPixelFromMapLocation(t.getPosition());
-                batch.draw(image, px.x, px.y, zoom, zoom);
+            TextureRegion image = getTroopImage(resPack, t, TroopAnimation.TroopAnimationKind.IDLE, idleFrame, direction, screen.getScenario());
+            Point px = helpers.getPixelFromMapLocation(t.getPosition());
+            batch.draw(image, px.x, px.y, zoom, zoom);
 
-                drawnTroops.put(t, px);
-            }
-        }
+            drawnTroops.put(t, px);
+        });
 
         drawnTroops.entrySet().forEach(t -> {
             if (t.getKey().isDestroyed()) {
@@ -201,7 +217,8 @@ public class TroopAnimationLayer implements MapLayer {
 
     @Override
     public void dispose() {
-        troopImages.values().forEach(Texture::dispose);
+        // the images belong to the atlas
+        troopImages.clear();
         troopTitleWidgets.values().forEach(TroopTitleWidget::dispose);
         TroopTitleWidget.disposeAll();
     }
@@ -3,10 +3,14 @@ package com.zhsan.gamecomponents.toolbar;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.ui.WidgetGroup;
@@ -17,6 +21,7 @@ import com.zhsan.gamecomponents.common.XmlHelper;
 import com.zhsan.gameobject.Architecture;
 import com.zhsan.gameobject.Faction;
 import com.zhsan.gameobject.GameMap;
+import com.zhsan.gameobject.GameScenario;
 import com.zhsan.screen.GameScreen;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -24,6 +29,8 @@ import org.w3c.dom.Node;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Peter on 19/4/2015.
@@ -49,6 +56,13 @@ public class SmallMap extends WidgetGroup {
 
     private int architectureScale;
 
+    // the map with the architectures on it, drawn again only where an architecture changed
+    private FrameBuffer rendered;
+    private TextureRegion renderedRegion;
+    private SpriteBatch renderBatch;
+    private GameScenario renderedScenario;
+    private Set<Architecture> changedArchitectures = ConcurrentHashMap.newKeySet();
+
     private void loadXml() {
         FileHandle f = Gdx.files.external(RES_PATH + FILE_NAME);
 
@@ -112,27 +126,106 @@ public class SmallMap extends WidgetGroup {
         this.setSize(mapWidth, mapHeight);
     }
 
+    /**
+     * Draw the architecture again the next time the minimap is drawn, e.g. after it changed hands.
+     * May be called on any thread.
+     */
+    public void invalidate(Architecture a) {
+        changedArchitectures.add(a);
+    }
+
     @Override
     public void draw(Batch batch, float parentAlpha) {
         super.draw(batch, parentAlpha);
 
-        // draw minimap
-        batch.draw(map, getX(), getY(), getWidth(), getHeight());
+        int width = (int) getWidth();
+        int height = (int) getHeight();
+        if (rendered == null || rendered.getWidth() != width || rendered.getHeight() != height ||
+                renderedScenario != screen.getScenario()) {
+            batch.end();
+            render(width, height);
+            batch.begin();
+        } else if (!changedArchitectures.isEmpty()) {
+            batch.end();
+            for (Architecture a : changedArchitectures) {
+                changedArchitectures.remove(a);
+                renderArchitecture(a);
+            }
+            batch.begin();
+        }
+
+        batch.draw(renderedRegion, getX(), getY(), getWidth(), getHeight());
+    }
+
+    private void render(int width, int height) {
+        if (rendered != null) {
+            rendered.dispose();
+        }
+        rendered = new FrameBuffer(Pixmap.Format.RGB888, width, height, false);
+        renderedRegion = new TextureRegion(rendered.getColorBufferTexture());
+        renderedRegion.flip(false, true);
+        if (renderBatch == null) {
+            renderBatch = new SpriteBatch();
+        }
+        renderBatch.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+
+        renderedScenario = screen.getScenario();
+        changedArchitectures.clear();
+
+        rendered.begin();
+        renderBatch.begin();
+        renderMap();
+        renderBatch.end();
+        rendered.end();
+    }
+
+    /**
+     * Draw the map and the architectures again over the area of the architecture only
+     */
+    private void renderArchitecture(Architecture a) {
+        int size = tileSize * architectureScale;
+        int xLo = Integer.MAX_VALUE, yLo = Integer.MAX_VALUE, xHi = Integer.MIN_VALUE, yHi = Integer.MIN_VALUE;
+        for (Point p : a.getLocations()) {
+            xLo = Math.min(xLo, (int) Math.floor(getArchitectureX(p, size)));
+            yLo = Math.min(yLo, (int) Math.floor(getArchitectureY(p, size)));
+            xHi = Math.max(xHi, (int) Math.ceil(getArchitectureX(p, size)) + size);
+            yHi = Math.max(yHi, (int) Math.ceil(getArchitectureY(p, size)) + size);
+        }
+        if (xLo > xHi) return;
+
+        rendered.begin();
+        Gdx.gl.glEnable(GL20.GL_SCISSOR_TEST);
+        Gdx.gl.glScissor(xLo, yLo, xHi - xLo, yHi - yLo);
+        renderBatch.begin();
+        renderMap();
+        renderBatch.end();
+        Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+        rendered.end();
+    }
+
+    private void renderMap() {
+        renderBatch.setColor(Color.WHITE);
+        renderBatch.draw(map, 0, 0, getWidth(), getHeight());
 
         // draw architectures on top of it
+        int size = tileSize * architectureScale;
         for (Architecture a : screen.getScenario().getArchitectures()) {
+            Faction f = a.getBelongedFaction();
+            renderBatch.setColor(f == null ? Color.WHITE : f.getColor());
             for (Point p : a.getLocations()) {
-                int size = tileSize * architectureScale;
-
-                Faction f = a.getBelongedFaction();
-                Color color = f == null ? Color.WHITE : f.getColor();
-
-                Sprite sprite = new Sprite(architecture, size ,size);
-                sprite.setCenter((int) (getX() + p.x * tileSize - size / 2), (int) (getY() + getHeight() - p.y * tileSize - size / 2));
-                sprite.setColor(color);
-                sprite.draw(batch);
+                renderBatch.draw(architecture, getArchitectureX(p, size), getArchitectureY(p, size), size, size,
+                        0, 0, size, size, false, false);
             }
         }
+        renderBatch.setColor(Color.WHITE);
+    }
+
+    private float getArchitectureX(Point p, int size) {
+        return p.x * tileSize - size / 2 - size / 2.0f;
+    }
+
+    private float getArchitectureY(Point p, int size) {
+        return getHeight() - p.y * tileSize - size / 2 - size / 2.0f;
     }
 
     public final void resize(int width, int height) {
@@ -142,6 +235,12 @@ public class SmallMap extends WidgetGroup {
     public void dispose() {
         architecture.dispose();
         map.dispose();
+        if (rendered != null) {
+            rendered.dispose();
+        }
+        if (renderBatch != null) {
+            renderBatch.dispose();
+        }
     }
 
     private class Listener extends InputListener {
@@ -15,6 +15,7 @@ import com.zhsan.common.exception.FileReadException;
 import com.zhsan.gamecomponents.common.StateTexture;
 import com.zhsan.gamecomponents.common.XmlHelper;
 import com.zhsan.gamecomponents.contextmenu.ContextMenu;
+import com.zhsan.gameobject.Architecture;
 import com.zhsan.screen.GameScreen;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -188,6 +189,10 @@ public class ToolBar extends WidgetGroup {
         return dateRunner.getDaysToGo();
     }
 
+    public void invalidateSmallMap(Architecture architecture) {
+        smallMap.invalidate(architecture);
+    }
+
     public void addRecord(GameRecord.StringKeys msgName, String... objects) {
         gameRecord.addRecord(msgName, objects);
     }
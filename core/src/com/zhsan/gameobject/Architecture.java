@@ -2,8 +2,6 @@ package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.math.MathUtils;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Point;
 import com.zhsan.common.Utility;
@@ -15,7 +13,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
 import java.util.function.Predicate;
 
@@ -32,6 +29,7 @@ public class Architecture implements HasPointBelongsFactionGameObject {
     private String nameImageName;
 
     private List<Point> location;
+    private Point center;
 
     private ArchitectureKind architectureKind;
     private Section belongedSection;
@@ -75,30 +73,33 @@ public class Architecture implements HasPointBelongsFactionGameObject {
         GameObjectList<Architecture> result = new GameObjectList<>();
 
         FileHandle f = root.child(Architecture.SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
-            String[] line;
+        try (TableReader reader = TableReader.open(f)) {
+            TableRow row;
             int index = 0;
-            while ((line = reader.readNext()) != null) {
+            while ((row = reader.nextRow()) != null) {
                 index++;
                 if (index == 1) continue; // skip first line.
 
-                Architecture data = new Architecture(Integer.parseInt(line[0]), scen);
-                data.setAiTags(line[1]);
-                data.nameImageName = line[2];
-                data.name = line[3];
-                data.architectureKind = scen.getArchitectureKinds().get(Integer.parseInt(line[4]));
-                data.location = Point.fromCSVList(line[5]);
-                data.belongedSection = scen.getSections().get(Integer.parseInt(line[6]));
-                data.population = Integer.parseInt(line[7]);
-                data.fund = Integer.parseInt(line[8]);
-                data.food = Integer.parseInt(line[9]);
-                data.agriculture = Float.parseFloat(line[10]);
-                data.commerce = Float.parseFloat(line[11]);
-                data.technology = Float.parseFloat(line[12]);
-                data.morale = Float.parseFloat(line[13]);
-                data.endurance = Float.parseFloat(line[14]);
-                data.creatableMilitaryKinds = scen.getMilitaryKinds().getItemsFromCSV(line[15]);
-                data.connectedArchitectures = new HashSet<>(XmlHelper.loadIntegerListFromXml(line[16]));
+                Architecture data = new Architecture(row.getInt(0), scen);
+                data.setAiTags(row.getString(1));
+                data.nameImageName = row.getString(2);
+                data.name = row.getString(3);
+                data.architectureKind = scen.getArchitectureKinds().get(row.getInt(4));
+                data.location = Point.fromCoordinatesList(row.getIntArray(5));
+                data.belongedSection = scen.getSections().get(row.getInt(6));
+                data.population = row.getInt(7);
+                data.fund = row.getInt(8);
+                data.food = row.getInt(9);
+                data.agriculture = row.getFloat(10);
+                data.commerce = row.getFloat(11);
+                data.technology = row.getFloat(12);
+                data.morale = row.getFloat(13);
+                data.endurance = row.getFloat(14);
+                data.creatableMilitaryKinds = scen.getMilitaryKinds().getItemsWithIds(row.getIntArray(15));
+                data.connectedArchitectures = new HashSet<>();
+                for (int id : row.getIntArray(16)) {
+                    data.connectedArchitectures.add(id);
+                }
 
                 result.add(data);
             }
@@ -111,33 +112,36 @@ public class Architecture implements HasPointBelongsFactionGameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Architecture> data) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.ARCHITECTURE_SAVE_HEADER).split(","));
-            for (Architecture d : data) {
-                writer.writeNext(new String[]{
-                        String.valueOf(d.getId()),
-                        d.getAiTags(),
-                        d.nameImageName,
-                        d.getName(),
-                        String.valueOf(d.architectureKind.getId()),
-                        Point.toCSVList(d.location),
-                        String.valueOf(d.belongedSection == null ? -1 : d.belongedSection.getId()),
-                        String.valueOf(d.population),
-                        String.valueOf(d.fund),
-                        String.valueOf(d.food),
-                        String.valueOf(d.agriculture),
-                        String.valueOf(d.commerce),
-                        String.valueOf(d.technology),
-                        String.valueOf(d.endurance),
-                        String.valueOf(d.morale),
-                        d.creatableMilitaryKinds.toCSV(),
-                        XmlHelper.saveIntegerListToXml(d.connectedArchitectures)
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, data);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameObjectList<Architecture> data) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.ARCHITECTURE_SAVE_HEADER).split(","));
+        for (Architecture d : data) {
+            writer.writeNext(new String[]{
+                    String.valueOf(d.getId()),
+                    d.getAiTags(),
+                    d.nameImageName,
+                    d.getName(),
+                    String.valueOf(d.architectureKind.getId()),
+                    Point.toCSVList(d.location),
+                    String.valueOf(d.belongedSection == null ? -1 : d.belongedSection.getId()),
+                    String.valueOf(d.population),
+                    String.valueOf(d.fund),
+                    String.valueOf(d.food),
+                    String.valueOf(d.agriculture),
+                    String.valueOf(d.commerce),
+                    String.valueOf(d.technology),
+                    String.valueOf(d.endurance),
+                    String.valueOf(d.morale),
+                    d.creatableMilitaryKinds.toCSV(),
+                    XmlHelper.saveIntegerListToXml(d.connectedArchitectures)
+            });
+        }
     }
 
     @Override
@@ -154,6 +158,16 @@ public class Architecture implements HasPointBelongsFactionGameObject {
         return location;
     }
 
+    /**
+     * @return Center of the bounding box of the locations, as {@link Point#getCenter}
+     */
+    public Point getCenter() {
+        if (center == null) {
+            center = Point.getCenter(location);
+        }
+        return center;
+    }
+
     @LuaAI.ExportToLua
     public ArchitectureKind getKind() {
         return architectureKind;
@@ -186,40 +200,45 @@ public class Architecture implements HasPointBelongsFactionGameObject {
         if (this.belongedSection != null && this.belongedSection.getBelongedFaction() != newSection.getBelongedFaction()) {
             changeFaction(newSection.getBelongedFaction());
         }
+        Section oldSection = this.belongedSection;
         this.belongedSection = newSection;
+        scenario.reindex(this);
+        scenario.architectureSectionChanged(this, oldSection, newSection);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getPersonsIncludingMoving() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.NORMAL);
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.NORMAL);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getPersons() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.NORMAL && p.getMovingDays() == 0);
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.NORMAL && p.getMovingDays() == 0);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getUnhiredPersons() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.UNEMPLOYED);
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.UNEMPLOYED);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getPersonsExcludingMayor() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.NORMAL &&
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.NORMAL &&
                 p.getDoingWorkType() != Person.DoingWork.MAYOR);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getPersonsWithoutLeadingMilitary() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.NORMAL &&
-                getMilitaries().filter(m -> m.getLeader() == p).size() == 0);
+        GameObjectList<Military> militaries = getMilitaries();
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.NORMAL &&
+                militaries.filter(m -> m.getLeader() == p).size() == 0);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Person> getPersonsNotInMilitary() {
-        return scenario.getPersons().filter(p -> p.getLocation() == this && p.getState() == Person.State.NORMAL &&
-                getMilitaries().filter(m -> m.getAllPersons().contains(p)).size() == 0);
+        GameObjectList<Military> militaries = getMilitaries();
+        return scenario.getPersonsAt(this).filter(p -> p.getState() == Person.State.NORMAL &&
+                militaries.filter(m -> m.getAllPersons().contains(p)).size() == 0);
     }
 
     public boolean hasFaction() {
@@ -227,7 +246,7 @@ public class Architecture implements HasPointBelongsFactionGameObject {
     }
 
     public GameObjectList<Facility> getFacilities() {
-        return scenario.getFacilities().filter(f -> f.getBelongedArchitecture() == this);
+        return scenario.getFacilitiesOf(this);
     }
 
     public String getFactionName() {
@@ -395,31 +414,32 @@ public class Architecture implements HasPointBelongsFactionGameObject {
 
     @LuaAI.ExportToLua
     public GameObjectList<Military> getMilitaries() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this);
+        return scenario.getMilitariesAt(this);
     }
 
     public GameObjectList<Military> getMilitariesWithLeader() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this && x.getLeader() != null);
+        return scenario.getMilitariesAt(this).filter(x -> x.getLeader() != null);
     }
 
     public GameObjectList<Military> getMilitariesWithoutLeader() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this && x.getLeader() == null);
+        return scenario.getMilitariesAt(this).filter(x -> x.getLeader() == null);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Military> getRecruitableMilitaries() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this && x.recruitable());
+        return scenario.getMilitariesAt(this).filter(Military::recruitable);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Military> getSelectTrainableMilitaries() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this && (x.getQuantity() > 0 || this.getRecruitableMilitaries().size() > 0) &&
+        boolean hasRecruitable = this.getRecruitableMilitaries().size() > 0;
+        return scenario.getMilitariesAt(this).filter(x -> (x.getQuantity() > 0 || hasRecruitable) &&
                 (x.getMorale() < GlobalVariables.maxMorale || x.getCombativity() < GlobalVariables.maxCombativity));
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Military> getTrainableMilitaries() {
-        return scenario.getMilitaries().filter(x -> x.getLocation() == this && x.trainable());
+        return scenario.getMilitariesAt(this).filter(Military::trainable);
     }
 
     public GameObjectList<MilitaryKind> getCreatableMilitaryKinds() {
@@ -528,7 +548,7 @@ public class Architecture implements HasPointBelongsFactionGameObject {
                 return; // skip development entirely - mayor can't do work.
             }
             getWorkingPersons(x -> x != Person.DoingWork.NONE && x != Person.DoingWork.MAYOR)
-                    .shuffledList().subList(0, totalWorkingPersons - affordable) // mayor must be working
+                    .shuffledList(scenario.getDailyRandom(this)).subList(0, totalWorkingPersons - affordable) // mayor must be working
                     .forEach(p -> p.setDoingWork(Person.DoingWork.NONE));
 
             agricultureWorkingPersons = getWorkingPersons(Person.DoingWork.AGRICULTURE);
@@ -740,6 +760,10 @@ public class Architecture implements HasPointBelongsFactionGameObject {
         connectedArchitectures.add(a.getId());
     }
 
+    void clearConnectedArchitectures() {
+        connectedArchitectures.clear();
+    }
+
     @LuaAI.ExportToLua
     public GameObjectList<Architecture> getConnectedArchitectures() {
         return scenario.getArchitectures().getItemsFromIds(connectedArchitectures);
@@ -0,0 +1,220 @@
+package com.zhsan.gameobject;
+
+import com.zhsan.common.GlobalVariables;
+import com.zhsan.common.Point;
+import com.zhsan.gameobject.pathfinding.TerrainCostGraph;
+import com.zhsan.gameobject.pathfinding.ZhPathFinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the graph of connected architectures of a scenario. Two architectures are connected if a path between them
+ * is short enough and no other architecture lies closer to any point of it.
+ *
+ * Paths from each architecture are searched in parallel, and the results merged in id order, so the graph is the same
+ * as building it one architecture at a time. The graph is saved with the scenario along with a fingerprint of the map
+ * and architecture positions, and only rebuilt when the fingerprint changes.
+ */
+final class ArchitectureLinks {
+
+    private static final int CELL_SIZE = 16;
+
+    private final GameScenario scen;
+    private final List<Architecture> architectures;
+    private final Point[] positions;
+
+    // spatial index: architecture indices in id order, bucketed by cells of CELL_SIZE * CELL_SIZE tiles
+    private final int cellColumns, cellRows;
+    private final int[][] cells;
+
+    private ArchitectureLinks(GameScenario scen) {
+        this.scen = scen;
+        this.architectures = new ArrayList<>(scen.getArchitectures().getAll());
+
+        positions = new Point[architectures.size()];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = architectures.get(i).getPosition();
+        }
+
+        GameMap map = scen.getGameMap();
+        cellColumns = (map.getWidth() + CELL_SIZE - 1) / CELL_SIZE;
+        cellRows = (map.getHeight() + CELL_SIZE - 1) / CELL_SIZE;
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int i = 0; i < cellColumns * cellRows; ++i) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < positions.length; ++i) {
+            buckets.get(cellOf(positions[i].x, positions[i].y)).add(i);
+        }
+        cells = new int[buckets.size()][];
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = buckets.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private int cellOf(int x, int y) {
+        int cx = Math.min(Math.max(x / CELL_SIZE, 0), cellColumns - 1);
+        int cy = Math.min(Math.max(y / CELL_SIZE, 0), cellRows - 1);
+        return cy * cellColumns + cx;
+    }
+
+    /**
+     * Fingerprint of everything the graph depends on: passable tiles, architecture positions and the path length limits
+     */
+    static long fingerprint(GameScenario scen) {
+        GameMap map = scen.getGameMap();
+        TerrainCostGraph graph = scen.getTerrainCostGraph(null);
+
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, map.getWidth());
+        hash = hash(hash, map.getHeight());
+        for (int i = 0; i < map.getWidth() * map.getHeight(); ++i) {
+            hash = hash(hash, graph.getCost(i) == Float.MAX_VALUE ? 0 : 1);
+        }
+        for (Architecture a : scen.getArchitectures()) {
+            Point p = a.getPosition();
+            hash = hash(hash, a.getId());
+            hash = hash(hash, p.x);
+            hash = hash(hash, p.y);
+        }
+        hash = hash(hash, GlobalVariables.maxPathLengthAsConnected);
+        hash = hash(hash, GlobalVariables.maxPathLengthAsConnected2);
+        return hash;
+    }
+
+    private static long hash(long hash, int value) {
+        for (int i = 0; i < 4; ++i) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Set up connections of all architectures of the scenario, adding to the connections they already have.
+     */
+    static void build(GameScenario scen) {
+        new ArchitectureLinks(scen).build();
+    }
+
+    private void build() {
+        // the shared graph is lazily created and reads unsynchronized caches, so create it before going parallel
+        scen.getTerrainCostGraph(null);
+
+        int n = architectures.size();
+        int[][] links = searchAll(IntStream.range(0, n).toArray(), GlobalVariables.maxPathLengthAsConnected);
+
+        // architectures that may still be unconnected when their turn comes in the merge need the longer search
+        BitSet connected = new BitSet(n);
+        for (int b = 0; b < n; ++b) {
+            if (!architectures.get(b).getConnectedArchitectures().isEmpty() || links[b].length > 0) {
+                connected.set(b);
+            }
+            for (int a : links[b]) {
+                if (a > b) connected.set(a);
+            }
+        }
+        int[] unconnected = IntStream.range(0, n).filter(i -> !connected.get(i)).toArray();
+        int[][] unconnectedLinks = searchAll(unconnected, GlobalVariables.maxPathLengthAsConnected2);
+        int[][] fallbackLinks = new int[n][];
+        for (int i = 0; i < unconnected.length; ++i) {
+            fallbackLinks[unconnected[i]] = unconnectedLinks[i];
+        }
+
+        for (int b = 0; b < n; ++b) {
+            Architecture arch = architectures.get(b);
+            connect(arch, links[b]);
+            if (arch.getConnectedArchitectures().size() == 0 && fallbackLinks[b] != null) {
+                connect(arch, fallbackLinks[b]);
+            }
+        }
+    }
+
+    private void connect(Architecture b, int[] links) {
+        for (int i : links) {
+            Architecture a = architectures.get(i);
+            b.addConnectedArchitectures(a);
+            a.addConnectedArchitectures(b);
+        }
+    }
+
+    private int[][] searchAll(int[] indices, int distance) {
+        return Arrays.stream(indices).parallel()
+                .mapToObj(b -> search(b, distance))
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Indices of architectures that b connects to within the distance, in id order
+     */
+    private int[] search(int b, int distance) {
+        ZhPathFinder pathFinder = new ZhPathFinder(scen, scen.getGameMap(), null);
+        IntStream.Builder result = IntStream.builder();
+        for (int a = 0; a < positions.length; ++a) {
+            if (a == b) continue;
+            if (positions[b].taxiDistanceTo(positions[a]) <= distance) {
+                List<Point> path = pathFinder.findPath(positions[b], positions[a]);
+                if (path != null && path.size() <= distance) {
+                    boolean nearAnyArch = false;
+                    for (Point p : path) {
+                        int closest = closestArchitecture(p, distance);
+                        if (closest >= 0 && closest != a && closest != b) {
+                            int d1 = positions[a].taxiDistanceTo(p);
+                            int d2 = positions[b].taxiDistanceTo(p);
+                            int dc = positions[closest].taxiDistanceTo(p);
+                            if (dc < d1 && dc < d2) {
+                                nearAnyArch = true;
+                                break;
+                            }
+                        }
+                    }
+                    if (!nearAnyArch) {
+                        result.add(a);
+                    }
+                }
+            }
+        }
+        return result.build().toArray();
+    }
+
+    /**
+     * Index of the architecture closest to p within the distance (exclusive), the one with the smallest id among
+     * equally close ones, or -1 if there is none.
+     */
+    private int closestArchitecture(Point p, int distance) {
+        int cx = Math.min(Math.max(p.x / CELL_SIZE, 0), cellColumns - 1);
+        int cy = Math.min(Math.max(p.y / CELL_SIZE, 0), cellRows - 1);
+
+        int best = -1;
+        int bestDistance = distance;
+        int maxRing = Math.max(cellColumns, cellRows);
+        for (int r = 0; r <= maxRing; ++r) {
+            // every tile in ring r is at least this far from p along one axis
+            int lowerBound = r == 0 ? 0 : (r - 1) * CELL_SIZE + 1;
+            if (lowerBound >= distance || (best >= 0 && lowerBound > bestDistance)) break;
+
+            for (int y = cy - r; y <= cy + r; ++y) {
+                if (y < 0 || y >= cellRows) continue;
+                boolean edgeRow = y == cy - r || y == cy + r;
+                for (int x = cx - r; x <= cx + r; x += edgeRow ? 1 : 2 * r) {
+                    if (x >= 0 && x < cellColumns) {
+                        for (int i : cells[y * cellColumns + x]) {
+                            int d = positions[i].taxiDistanceTo(p);
+                            if (d < bestDistance || (d == bestDistance && best >= 0 && i < best)) {
+                                best = i;
+                                bestDistance = d;
+                            }
+                        }
+                    }
+                    if (r == 0) break;
+                }
+            }
+        }
+        return best;
+    }
+
+}
@@ -1,7 +1,5 @@
 package com.zhsan.gameobject;
 
-import com.zhsan.common.Point;
-
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -30,8 +28,6 @@ public final class Caches {
         return cache.get(key);
     }
 
-    public static final Map<Point, Architecture> architectureAtPoint = new HashMap<>();
-
     public static final Map<Troop, Military> troopMilitaries = new HashMap<>();
 
     public static final Map<TerrainDetail, Boolean> isTerrainPassableByAnyMilitaryKind = new HashMap<>();
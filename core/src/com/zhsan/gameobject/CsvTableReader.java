@@ -0,0 +1,133 @@
+package com.zhsan.gameobject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a CSV file row by row through a fixed character buffer, unquoting fields straight into a reused
+ * {@link TableRow}. Parses the files written by opencsv the same way its CSVReader does: fields separated by commas,
+ * quoted with double quotes, a quote inside quotes written as two quotes or escaped with a backslash, and quoted
+ * fields spanning several lines.
+ */
+final class CsvTableReader implements TableReader {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position, limit;
+
+    private char[] line = new char[256];
+    private int lineLength;
+
+    private final TableRow row = new TableRow();
+
+    CsvTableReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next line into the line buffer, without its terminator
+     * @return false if the end of the file is reached
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean any = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return any;
+                }
+            }
+            any = true;
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            appendToLine(start, position - start);
+            if (position < limit) {
+                char terminator = buffer[position++];
+                if (terminator == '\r') {
+                    if (position == limit) {
+                        limit = reader.read(buffer, 0, buffer.length);
+                        position = 0;
+                        if (limit < 0) limit = 0;
+                    }
+                    if (position < limit && buffer[position] == '\n') {
+                        position++;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private void appendToLine(int offset, int count) {
+        if (lineLength + count > line.length) {
+            line = java.util.Arrays.copyOf(line, Math.max(line.length * 2, lineLength + count));
+        }
+        System.arraycopy(buffer, offset, line, lineLength, count);
+        lineLength += count;
+    }
+
+    @Override
+    public TableRow nextRow() throws IOException {
+        if (!readLine()) return null;
+
+        row.clear();
+        boolean inQuotes = false;
+        boolean inField = false;
+        while (true) {
+            for (int i = 0; i < lineLength; ++i) {
+                char c = line[i];
+                if (c == ESCAPE) {
+                    boolean escapable = (inQuotes || inField) && i + 1 < lineLength
+                            && (line[i + 1] == QUOTE || line[i + 1] == ESCAPE);
+                    if (escapable) {
+                        row.append(line[++i]);
+                    }
+                } else if (c == QUOTE) {
+                    if ((inQuotes || inField) && i + 1 < lineLength && line[i + 1] == QUOTE) {
+                        row.append(line[++i]);
+                    } else {
+                        inQuotes = !inQuotes;
+                        // a quote in the middle of an unquoted field is kept as it is
+                        if (i > 2 && line[i - 1] != SEPARATOR && i + 1 < lineLength && line[i + 1] != SEPARATOR) {
+                            row.append(c);
+                        }
+                    }
+                    inField = !inField;
+                } else if (c == SEPARATOR && !inQuotes) {
+                    row.endField();
+                    inField = false;
+                } else {
+                    row.append(c);
+                    inField = true;
+                }
+            }
+
+            if (!inQuotes) break;
+
+            // the quoted field continues on the next line
+            row.append('\n');
+            if (!readLine()) {
+                throw new IOException("Un-terminated quoted field at end of CSV file");
+            }
+            inField = false;
+        }
+        row.endField();
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
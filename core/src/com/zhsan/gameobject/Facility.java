@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.Point;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
@@ -11,7 +9,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 /**
  * Created by Peter on 25/5/2015.
@@ -65,7 +62,7 @@ public class Facility implements GameObject {
         }
 
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -90,21 +87,24 @@ public class Facility implements GameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Facility> kinds) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.FACILITY_SAVE_HEADER).split(","));
-            for (Facility detail : kinds) {
-                writer.writeNext(new String[]{
-                        String.valueOf(detail.getId()),
-                        String.valueOf(detail.kind.getId()),
-                        detail.location.toCSV(),
-                        String.valueOf(detail.belongedArchitecture.getId()),
-                        String.valueOf(detail.endurance)
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, kinds);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameObjectList<Facility> kinds) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.FACILITY_SAVE_HEADER).split(","));
+        for (Facility detail : kinds) {
+            writer.writeNext(new String[]{
+                    String.valueOf(detail.getId()),
+                    String.valueOf(detail.kind.getId()),
+                    detail.location.toCSV(),
+                    String.valueOf(detail.belongedArchitecture.getId()),
+                    String.valueOf(detail.endurance)
+            });
+        }
     }
 
     @Override
@@ -130,7 +130,9 @@ public class Facility implements GameObject {
     }
 
     public Facility setLocation(Point location) {
+        Point old = this.location;
         this.location = location;
+        scenario.facilityMoved(this, old, location);
         return this;
     }
 
@@ -141,6 +143,7 @@ public class Facility implements GameObject {
 
     public Facility setBelongedArchitecture(Architecture belongedArchitecture) {
         this.belongedArchitecture = belongedArchitecture;
+        scenario.reindex(this);
         return this;
     }
 }
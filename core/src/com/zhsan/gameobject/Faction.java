@@ -2,8 +2,6 @@ package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
 import com.zhsan.gamecomponents.common.XmlHelper;
@@ -12,7 +10,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -65,7 +62,7 @@ public class Faction implements GameObject {
         GameObjectList<Faction> result = new GameObjectList<>();
 
         FileHandle f = root.child(Faction.SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -91,7 +88,7 @@ public class Faction implements GameObject {
         GameObjectList<Faction> result = new GameObjectList<>();
 
         FileHandle f = root.child(Faction.SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -112,21 +109,24 @@ public class Faction implements GameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Faction> data) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.FACTION_SAVE_HEADER).split(","));
-            for (Faction d : data) {
-                writer.writeNext(new String[]{
-                        String.valueOf(d.getId()),
-                        d.getAiTags(),
-                        d.getName(),
-                        XmlHelper.saveColorToXml(d.color),
-                        String.valueOf(d.leader.getId())
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, data);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameObjectList<Faction> data) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.FACTION_SAVE_HEADER).split(","));
+        for (Faction d : data) {
+            writer.writeNext(new String[]{
+                    String.valueOf(d.getId()),
+                    d.getAiTags(),
+                    d.getName(),
+                    XmlHelper.saveColorToXml(d.color),
+                    String.valueOf(d.leader.getId())
+            });
+        }
     }
 
     int getLeaderId() {
@@ -155,24 +155,46 @@ public class Faction implements GameObject {
     }
 
     public GameObjectList<Person> getPersons() {
-        return scenario.getPersons().filter(p -> p.getBelongedFaction() == this);
+        GameObjectList<Person> result = new GameObjectList<>();
+        for (Section s : getSections()) {
+            for (Architecture a : scenario.getArchitecturesOf(s)) {
+                scenario.getPersonsAt(a).forEach(result::add);
+            }
+            for (Troop t : scenario.getTroopsOf(s)) {
+                scenario.getPersonsAt(t).forEach(result::add);
+            }
+        }
+        return result.filter(p -> p.getState() == Person.State.NORMAL);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Section> getSections() {
-        return scenario.getSections().filter(s -> s.getBelongedFaction() == this);
+        return scenario.getSectionsOf(this);
     }
 
     public GameObjectList<Architecture> getArchitectures() {
-        return scenario.getArchitectures().filter(a -> a.getBelongedFaction() == this);
+        GameObjectList<Architecture> result = new GameObjectList<>();
+        getSections().forEach(s -> scenario.getArchitecturesOf(s).forEach(result::add));
+        return result;
     }
 
     public GameObjectList<Military> getMilitaries() {
-        return scenario.getMilitaries().filter(m -> m.getBelongedFaction() == this);
+        GameObjectList<Military> result = new GameObjectList<>();
+        for (Section s : getSections()) {
+            for (Architecture a : scenario.getArchitecturesOf(s)) {
+                scenario.getMilitariesAt(a).forEach(result::add);
+            }
+            for (Troop t : scenario.getTroopsOf(s)) {
+                scenario.getMilitariesAt(t).forEach(result::add);
+            }
+        }
+        return result;
     }
 
     public GameObjectList<Troop> getTroops() {
-        return scenario.getTroops().filter(t -> t.getBelongedFaction() == this);
+        GameObjectList<Troop> result = new GameObjectList<>();
+        getSections().forEach(s -> scenario.getTroopsOf(s).forEach(result::add));
+        return result;
     }
 
     Person pickLeader() {
@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.exception.EmptyFileException;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
@@ -11,7 +9,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 /**
  * Created by Peter on 14/5/2015.
@@ -22,6 +19,8 @@ public class GameData {
 
     private @Nullable Faction currentPlayer;
     private int dayPassed;
+    private @Nullable Long architectureLinksFingerprint;
+    private @Nullable Long randomSeed;
 
     private GameData(){}
 
@@ -30,7 +29,7 @@ public class GameData {
 
         FileHandle f = root.child(SAVE_FILE);
 
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -45,6 +44,16 @@ public class GameData {
                     data.currentPlayer = null;
                 }
                 data.dayPassed = Integer.parseInt(line[1]);
+                if (line.length > 2 && line[2].length() > 0) {
+                    data.architectureLinksFingerprint = Long.parseUnsignedLong(line[2], 16);
+                } else {
+                    data.architectureLinksFingerprint = null;
+                }
+                if (line.length > 3 && line[3].length() > 0) {
+                    data.randomSeed = Long.parseUnsignedLong(line[3], 16);
+                } else {
+                    data.randomSeed = null;
+                }
 
                 return data;
             }
@@ -57,16 +66,21 @@ public class GameData {
 
     public static final void toCSV(FileHandle root, GameData data) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.GAME_DATA_SAVE_HEADER).split(","));
-            writer.writeNext(new String[]{
-                    String.valueOf(data.currentPlayer != null ? data.currentPlayer.getId() : -1),
-                    String.valueOf(data.dayPassed)
-            });
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, data);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameData data) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.GAME_DATA_SAVE_HEADER).split(","));
+        writer.writeNext(new String[]{
+                String.valueOf(data.currentPlayer != null ? data.currentPlayer.getId() : -1),
+                String.valueOf(data.dayPassed),
+                data.architectureLinksFingerprint != null ? Long.toHexString(data.architectureLinksFingerprint) : "",
+                data.randomSeed != null ? Long.toHexString(data.randomSeed) : ""
+        });
     }
 
     public void setCurrentPlayer(@Nullable Faction currentPlayer) {
@@ -81,7 +95,31 @@ public class GameData {
         return dayPassed;
     }
 
+    /**
+     * Fingerprint of the map and architectures the saved architecture connections were built from, null if unknown
+     */
+    public @Nullable Long getArchitectureLinksFingerprint() {
+        return architectureLinksFingerprint;
+    }
+
+    public void setArchitectureLinksFingerprint(@Nullable Long architectureLinksFingerprint) {
+        this.architectureLinksFingerprint = architectureLinksFingerprint;
+    }
+
     public void advanceDay() {
         dayPassed++;
     }
+
+    /**
+     * Seed of the random choices made during the game, kept in saves so that a loaded game makes the same choices.
+     * Null if not chosen yet.
+     */
+    public @Nullable Long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public void setRandomSeed(@Nullable Long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+
 }
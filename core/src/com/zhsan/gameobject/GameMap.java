@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.Point;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
@@ -10,6 +8,10 @@ import com.zhsan.gamecomponents.GlobalStrings;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Created by Peter on 17/3/2015.
@@ -18,6 +20,10 @@ public class GameMap {
 
     public static final String SAVE_FILE = "Map.csv";
     public static final String MAP_DATA_FILE = "MapData.txt";
+    public static final String MAP_DATA_BINARY_FILE = "MapData.bin";
+
+    private static final int MAP_DATA_BINARY_MAGIC = 0x5a48534d; // ZHSM
+    private static final int MAP_DATA_BINARY_HEADER_SIZE = 12;
 
     private int zoom;
     private final int width;
@@ -25,35 +31,108 @@ public class GameMap {
     private final String fileName;
     private final int imageCount;
     private final int tileInEachImage;
-    private final TerrainDetail[][] mapData;
 
-    private GameMap(int zoom, int width, int height, String fileName, int imageCount, int tileInEachImage, TerrainDetail[][] mapData) {
+    // terrain id of each tile in row-major order, and terrain details by id
+    private final short[] terrain;
+    private final TerrainDetail[] terrainDetails;
+
+    private GameMap(int zoom, int width, int height, String fileName, int imageCount, int tileInEachImage,
+                    short[] terrain, TerrainDetail[] terrainDetails) {
         this.zoom = zoom;
         this.width = width;
         this.height = height;
         this.fileName = fileName;
         this.imageCount = imageCount;
         this.tileInEachImage = tileInEachImage;
-        this.mapData = mapData;
+        this.terrain = terrain;
+        this.terrainDetails = terrainDetails;
+    }
+
+    private static TerrainDetail[] terrainDetailsById(GameScenario scen) {
+        GameObjectList<TerrainDetail> details = scen.getTerrainDetails();
+        int maxId = details.getAll().stream().mapToInt(TerrainDetail::getId).max().orElse(-1);
+        TerrainDetail[] result = new TerrainDetail[maxId + 1];
+        details.forEach(t -> result[t.getId()] = t);
+        return result;
     }
 
-    private static TerrainDetail[][] readMapData(GameScenario scen, int width, int height, String line) {
-        TerrainDetail[][] result = new TerrainDetail[height][width];
-        String[] split = line.trim().split("\\s+");
-        for (int i = 0; i < result.length; ++i) {
-            for (int j = 0; j < result[i].length; ++j) {
-                result[j][i] = scen.getTerrainDetails().get(Integer.parseInt(split[i * result.length + j]));
+    private static short checkTerrainId(int id, TerrainDetail[] terrainDetails) throws IOException {
+        if (id < 0 || id >= terrainDetails.length || terrainDetails[id] == null) {
+            throw new IOException("Unknown terrain id " + id);
+        }
+        return (short) id;
+    }
+
+    /**
+     * Parse the whitespace separated terrain ids of the text form while streaming it
+     */
+    private static short[] readMapText(Reader reader, int width, int height, TerrainDetail[] terrainDetails) throws IOException {
+        short[] result = new short[width * height];
+        int count = 0;
+        int value = -1;
+        int c;
+        while ((c = reader.read()) >= 0) {
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            } else if (Character.isWhitespace(c)) {
+                if (value >= 0) {
+                    if (count >= result.length) throw new IOException("Too many tiles in map data");
+                    result[count++] = checkTerrainId(value, terrainDetails);
+                    value = -1;
+                }
+            } else {
+                throw new IOException("Unexpected character in map data: " + (char) c);
             }
         }
+        if (value >= 0) {
+            if (count >= result.length) throw new IOException("Too many tiles in map data");
+            result[count++] = checkTerrainId(value, terrainDetails);
+        }
+        if (count != result.length) {
+            throw new IOException("Expected " + result.length + " tiles in map data, found " + count);
+        }
         return result;
     }
 
+    /**
+     * Read the binary sidecar of the text form, a header of magic number, width and height followed by the terrain id
+     * of each tile as shorts in row-major order, through a memory map.
+     * @return The terrain, or null if the sidecar does not match the map size
+     */
+    private static short[] readMapBinary(FileHandle f, int width, int height, TerrainDetail[] terrainDetails) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.file().toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != MAP_DATA_BINARY_HEADER_SIZE + 2L * width * height) return null;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAP_DATA_BINARY_MAGIC || buffer.getInt() != width || buffer.getInt() != height) return null;
+
+            short[] result = new short[width * height];
+            buffer.asShortBuffer().get(result);
+            for (short id : result) {
+                checkTerrainId(id, terrainDetails);
+            }
+            return result;
+        }
+    }
+
+    private static void writeMapBinary(FileHandle f, GameMap map) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAP_DATA_BINARY_HEADER_SIZE + 2 * map.terrain.length);
+        buffer.putInt(MAP_DATA_BINARY_MAGIC).putInt(map.width).putInt(map.height);
+        buffer.asShortBuffer().put(map.terrain);
+        try (FileChannel channel = FileChannel.open(f.file().toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
     public static GameMap fromCSV(FileHandle root, @NotNull GameScenario scen) {
         int version = scen.getGameSurvey().getVersion();
 
         FileHandle f = root.child(SAVE_FILE);
         GameMapBuilder builder = new GameMapBuilder();
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -71,26 +150,52 @@ public class GameMap {
             throw new FileReadException(f.path(), e);
         }
 
+        TerrainDetail[] terrainDetails = terrainDetailsById(scen);
+        builder.setTerrainDetails(terrainDetails);
+
         FileHandle data = root.child(MAP_DATA_FILE);
-        try (BufferedReader reader = new BufferedReader(data.reader())) {
-            StringBuilder entireData = new StringBuilder();
+        if (SaveSnapshot.exists(root)) {
+            try (TableReader reader = TableReader.open(data)) {
+                short[] terrain = new short[builder.width * builder.height];
+                for (int r = 0; r < builder.height; ++r) {
+                    String[] line = reader.readNext();
+                    for (int c = 0; c < builder.width; ++c) {
+                        terrain[r * builder.width + c] = checkTerrainId(Integer.parseInt(line[c]), terrainDetails);
+                    }
+                }
+                builder.setTerrain(terrain);
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                entireData.append(line).append(" ");
+                return builder.createGameMap();
+            } catch (IOException e) {
+                throw new FileReadException(data.path(), e);
             }
+        }
+
+        FileHandle binaryData = root.child(MAP_DATA_BINARY_FILE);
+        if (binaryData.exists() && binaryData.lastModified() >= data.lastModified()) {
+            try {
+                short[] terrain = readMapBinary(binaryData, builder.width, builder.height, terrainDetails);
+                if (terrain != null) {
+                    builder.setTerrain(terrain);
+                    return builder.createGameMap();
+                }
+            } catch (IOException e) {
+                throw new FileReadException(binaryData.path(), e);
+            }
+        }
 
-            builder.setMapData(readMapData(scen, builder.width, builder.height, entireData.toString()));
+        try (Reader reader = new BufferedReader(data.reader())) {
+            builder.setTerrain(readMapText(reader, builder.width, builder.height, terrainDetails));
 
             return builder.createGameMap();
         } catch (IOException e) {
-            throw new FileReadException(f.path(), e);
+            throw new FileReadException(data.path(), e);
         }
     }
 
     public static void toCSV(FileHandle root, GameMap map) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
+        try (TableWriter writer = TableWriter.create(f)) {
             writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.MAP_SAVE_HEADER).split(","));
             writer.writeNext(new String[]{
                     String.valueOf(map.zoom),
@@ -105,10 +210,29 @@ public class GameMap {
         }
 
         FileHandle data = root.child(MAP_DATA_FILE);
-        try (Writer writer = data.writer(false)) {
-            for (int r = 0; r < map.mapData.length; ++r) {
-                for (int c = 0; c < map.mapData.length; ++c) {
-                    writer.write(String.format("%3s", map.mapData[c][r].getId()));
+        if (SaveSnapshot.exists(root)) {
+            try (TableWriter writer = TableWriter.create(data)) {
+                for (int r = 0; r < map.height; ++r) {
+                    String[] line = new String[map.width];
+                    for (int c = 0; c < map.width; ++c) {
+                        line[c] = String.valueOf(map.terrain[r * map.width + c]);
+                    }
+                    writer.writeNext(line);
+                }
+            } catch (IOException e) {
+                throw new FileWriteException(data.path(), e);
+            }
+            return;
+        }
+
+        try (Writer writer = new BufferedWriter(data.writer(false))) {
+            for (int r = 0; r < map.height; ++r) {
+                for (int c = 0; c < map.width; ++c) {
+                    String id = String.valueOf(map.terrain[r * map.width + c]);
+                    for (int i = id.length(); i < 3; ++i) {
+                        writer.write(' ');
+                    }
+                    writer.write(id);
                 }
                 writer.write("\n");
             }
@@ -116,6 +240,12 @@ public class GameMap {
             throw new FileWriteException(data.path(), e);
         }
 
+        FileHandle binaryData = root.child(MAP_DATA_BINARY_FILE);
+        try {
+            writeMapBinary(binaryData, map);
+        } catch (IOException e) {
+            throw new FileWriteException(binaryData.path(), e);
+        }
     }
 
     /**
@@ -151,8 +281,8 @@ public class GameMap {
     }
 
     public TerrainDetail getTerrainAt(int x, int y) {
-        if (x >= 0 && x < this.getWidth() && y >= 0 && y < this.getHeight()) {
-            return mapData[x][y];
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            return terrainDetails[terrain[y * width + x]];
         } else {
             return null;
         }
@@ -169,7 +299,8 @@ public class GameMap {
         private String fileName;
         private int imageCount;
         private int tileInEachImage;
-        private TerrainDetail[][] mapData;
+        private short[] terrain;
+        private TerrainDetail[] terrainDetails;
 
         public GameMapBuilder setZoom(int zoom) {
             this.zoom = zoom;
@@ -201,13 +332,18 @@ public class GameMap {
             return this;
         }
 
-        public GameMapBuilder setMapData(TerrainDetail[][] mapData) {
-            this.mapData = mapData;
+        public GameMapBuilder setTerrain(short[] terrain) {
+            this.terrain = terrain;
+            return this;
+        }
+
+        public GameMapBuilder setTerrainDetails(TerrainDetail[] terrainDetails) {
+            this.terrainDetails = terrainDetails;
             return this;
         }
 
         public GameMap createGameMap() {
-            return new GameMap(zoom, width, height, fileName, imageCount, tileInEachImage, mapData);
+            return new GameMap(zoom, width, height, fileName, imageCount, tileInEachImage, terrain, terrainDetails);
         }
     }
 }
@@ -3,10 +3,6 @@ package com.zhsan.gameobject;
 import com.zhsan.gamecomponents.GlobalStrings;
 import com.zhsan.lua.LuaAI;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -33,30 +29,26 @@ public interface GameObject {
             case "Name":
                 return getName();
             default:
+                GameObjectAccessors accessors = GameObjectAccessors.of(this.getClass());
                 if (context != null) {
-                    try {
-                        List<Method> candidates = new ArrayList<>();
-                        for (Method m : this.getClass().getMethods()) {
-                            if (m.getName().equals("get" + fname) &&
-                                    m.getParameterTypes().length == 1 && GameObject.class.isAssignableFrom(m.getParameterTypes()[0])) {
-                                candidates.add(m);
-                            }
-                        }
-                        if (candidates.size() == 1) {
-                            return candidates.get(0).invoke(this, context);
-                        } else {
-                            throw new NoSuchMethodException("There must be exactly one method with one GameObject argument." + candidates);
+                    GameObjectAccessors.Accessor getter = accessors.contextGetter(fname);
+                    if (!getter.isMissing() && GameObjectAccessors.accepts(getter, context)) {
+                        try {
+                            return GameObjectAccessors.get(getter, this, context);
+                        } catch (Throwable e) {
+                            // fall to next case
                         }
-                    } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-                        // fall to next case
                     }
                 }
-                try {
-                    Method m = this.getClass().getMethod("get" + fname);
-                    return m.invoke(this);
-                } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-                    return GlobalStrings.getString(GlobalStrings.Keys.NO_CONTENT);
+                GameObjectAccessors.Accessor getter = accessors.getter(fname);
+                if (!getter.isMissing()) {
+                    try {
+                        return GameObjectAccessors.get(getter, this);
+                    } catch (Throwable e) {
+                        // fall to next case
+                    }
                 }
+                return GlobalStrings.getString(GlobalStrings.Keys.NO_CONTENT);
         }
     }
 
@@ -82,11 +74,13 @@ public interface GameObject {
     }
 
     public default boolean satisfyMethod(String fname) {
+        GameObjectAccessors.Accessor predicate = GameObjectAccessors.of(this.getClass()).predicate(fname);
+        if (predicate.isMissing()) {
+            return false;
+        }
         try {
-            String actualName = fname.substring(0, 1).toLowerCase() + fname.substring(1);
-            Method m = this.getClass().getMethod(actualName);
-            return (boolean) m.invoke(this);
-        } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException | ClassCastException e) {
+            return GameObjectAccessors.test(predicate, this);
+        } catch (Throwable e) {
             return false;
         }
     }
@@ -0,0 +1,144 @@
+package com.zhsan.gameobject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-class registry of the getters looked up by name in {@link GameObject#getField} and
+ * {@link GameObject#satisfyMethod}. Each name is looked up by reflection once per class, and the method found, or
+ * the absence of one, is kept as a method handle for every later call.
+ */
+final class GameObjectAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, GameObject.class);
+    private static final MethodType CONTEXT_GETTER_TYPE =
+            MethodType.methodType(Object.class, GameObject.class, GameObject.class);
+    private static final MethodType PREDICATE_TYPE = MethodType.methodType(boolean.class, GameObject.class);
+
+    private static final ClassValue<GameObjectAccessors> ACCESSORS = new ClassValue<GameObjectAccessors>() {
+        @Override
+        protected GameObjectAccessors computeValue(Class<?> type) {
+            return new GameObjectAccessors(type);
+        }
+    };
+
+    /**
+     * Looked up method of one name, or a miss
+     */
+    static final class Accessor {
+        private static final Accessor MISSING = new Accessor(null, null);
+
+        private final MethodHandle handle;
+        private final Class<?> parameterType;
+
+        private Accessor(MethodHandle handle, Class<?> parameterType) {
+            this.handle = handle;
+            this.parameterType = parameterType;
+        }
+
+        boolean isMissing() {
+            return handle == null;
+        }
+    }
+
+    private final Class<?> type;
+    private final Map<String, Accessor> getters = new ConcurrentHashMap<>();
+    private final Map<String, Accessor> contextGetters = new ConcurrentHashMap<>();
+    private final Map<String, Accessor> predicates = new ConcurrentHashMap<>();
+
+    private GameObjectAccessors(Class<?> type) {
+        this.type = type;
+    }
+
+    static GameObjectAccessors of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * @return The public method get{fname} taking no argument
+     */
+    Accessor getter(String fname) {
+        return getters.computeIfAbsent(fname, n -> {
+            try {
+                return new Accessor(adapt(type.getMethod("get" + n), GETTER_TYPE), null);
+            } catch (NoSuchMethodException e) {
+                return Accessor.MISSING;
+            }
+        });
+    }
+
+    /**
+     * @return The only public method get{fname} taking one GameObject argument
+     */
+    Accessor contextGetter(String fname) {
+        return contextGetters.computeIfAbsent(fname, n -> {
+            Method found = null;
+            for (Method m : type.getMethods()) {
+                if (m.getName().equals("get" + n) &&
+                        m.getParameterTypes().length == 1 && GameObject.class.isAssignableFrom(m.getParameterTypes()[0])) {
+                    if (found != null) {
+                        return Accessor.MISSING;
+                    }
+                    found = m;
+                }
+            }
+            if (found == null) {
+                return Accessor.MISSING;
+            }
+            return new Accessor(adapt(found, CONTEXT_GETTER_TYPE), found.getParameterTypes()[0]);
+        });
+    }
+
+    /**
+     * @return The public method named fname with its first letter in lower case, taking no argument and returning
+     * a boolean
+     */
+    Accessor predicate(String fname) {
+        return predicates.computeIfAbsent(fname, n -> {
+            String actualName = n.substring(0, 1).toLowerCase() + n.substring(1);
+            try {
+                Method m = type.getMethod(actualName);
+                if (m.getReturnType() != boolean.class && m.getReturnType() != Boolean.class) {
+                    return Accessor.MISSING;
+                }
+                return new Accessor(adapt(m, PREDICATE_TYPE), null);
+            } catch (NoSuchMethodException e) {
+                return Accessor.MISSING;
+            }
+        });
+    }
+
+    static Object get(Accessor getter, GameObject target) throws Throwable {
+        return (Object) getter.handle.invokeExact(target);
+    }
+
+    /**
+     * @return true if the context can be passed to the getter
+     */
+    static boolean accepts(Accessor contextGetter, GameObject context) {
+        return contextGetter.parameterType.isInstance(context);
+    }
+
+    static Object get(Accessor contextGetter, GameObject target, GameObject context) throws Throwable {
+        return (Object) contextGetter.handle.invokeExact(target, context);
+    }
+
+    static boolean test(Accessor predicate, GameObject target) throws Throwable {
+        return (boolean) predicate.handle.invokeExact(target);
+    }
+
+    private static MethodHandle adapt(Method m, MethodType type) {
+        // public methods inherited from non-public classes are otherwise not accessible
+        m.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflect(m).asType(type);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
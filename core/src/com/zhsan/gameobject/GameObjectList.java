@@ -13,9 +13,69 @@ import java.util.stream.Collectors;
  */
 public class GameObjectList<T extends GameObject> extends AbstractCollection<T> {
 
+    /**
+     * A secondary index over the list, grouping items by a key derived from each item, e.g. persons by location.
+     * Items are re-keyed whenever they are added, removed or passed to {@link GameObjectList#reindex(GameObject)}.
+     * Reindexing happens from the faction AIs running concurrently, so all access to the index holds its lock.
+     * @param <K> Key type. Keys are compared with equals/hashCode, null is allowed.
+     */
+    public final class Index<K> {
+        private final Function<T, K> keyFunction;
+        private final Map<K, SortedMap<Integer, T>> buckets = new HashMap<>();
+        private final Map<Integer, K> currentKeys = new HashMap<>();
+
+        private Index(Function<T, K> keyFunction) {
+            this.keyFunction = keyFunction;
+        }
+
+        private synchronized void put(T obj) {
+            K key = keyFunction.apply(obj);
+            currentKeys.put(obj.getId(), key);
+            buckets.computeIfAbsent(key, k -> new TreeMap<>()).put(obj.getId(), obj);
+        }
+
+        private synchronized void delete(T obj) {
+            if (!currentKeys.containsKey(obj.getId())) return;
+            K key = currentKeys.remove(obj.getId());
+            SortedMap<Integer, T> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(obj.getId());
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+
+        private synchronized void update(T obj) {
+            K key = keyFunction.apply(obj);
+            if (currentKeys.containsKey(obj.getId()) && Objects.equals(currentKeys.get(obj.getId()), key)) return;
+            delete(obj);
+            put(obj);
+        }
+
+        /**
+         * @return a new list with all items having the given key, in id order. Runs in O(result).
+         */
+        public synchronized GameObjectList<T> get(K key) {
+            SortedMap<Integer, T> bucket = buckets.get(key);
+            GameObjectList<T> result = new GameObjectList<>();
+            if (bucket != null) {
+                result.content.putAll(bucket);
+            }
+            return result;
+        }
+
+        public synchronized int count(K key) {
+            SortedMap<Integer, T> bucket = buckets.get(key);
+            return bucket == null ? 0 : bucket.size();
+        }
+    }
+
     private SortedMap<Integer, T> content = new TreeMap<>();
     private boolean unmodifiable = false;
 
+    private List<Index<?>> indexes = new ArrayList<>();
+
     public GameObjectList(){}
 
     public GameObjectList(GameObjectList<T> old) {
@@ -34,7 +94,11 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
     public boolean add(T obj) {
         if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
         if (obj != null) {
-            content.put(obj.getId(), obj);
+            T old = content.put(obj.getId(), obj);
+            if (old != null) {
+                indexes.forEach(i -> i.delete(old));
+            }
+            indexes.forEach(i -> i.put(obj));
             return true;
         } else {
             return false;
@@ -60,17 +124,52 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
     @Override
     public boolean remove(Object o) {
         if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
-        return super.remove(o);
+        if (!(o instanceof GameObject)) return false;
+        GameObject g = (GameObject) o;
+        if (content.get(g.getId()) != o) return false;
+        remove(content.get(g.getId()));
+        return true;
     }
 
     public T remove(T t) {
         if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
-        return content.remove(t.getId());
+        T removed = content.remove(t.getId());
+        if (removed != null) {
+            indexes.forEach(i -> i.delete(removed));
+        }
+        return removed;
+    }
+
+    /**
+     * Create a secondary index on this list. The index is kept up to date on add and remove, but changes in the
+     * indexed property of an item must be reported by calling {@link #reindex(GameObject)}.
+     * @param keyFunction Function computing the index key of an item
+     * @param <K> Key type
+     * @return The index
+     */
+    public <K> Index<K> addIndex(Function<T, K> keyFunction) {
+        if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
+        Index<K> index = new Index<>(keyFunction);
+        content.values().forEach(index::put);
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Recompute the index keys of the item. Does nothing if the item is not in this list.
+     * @param t The item whose indexed properties have changed
+     */
+    public void reindex(T t) {
+        if (content.get(t.getId()) != t) return;
+        indexes.forEach(i -> i.update(t));
     }
 
-    public List<T> shuffledList() {
+    /**
+     * @param random Source of the order, so that the same generator state gives the same order
+     */
+    public List<T> shuffledList(Random random) {
         List<T> result = new ArrayList<>(content.values());
-        Collections.shuffle(result);
+        Collections.shuffle(result, random);
         return result;
     }
 
@@ -79,6 +178,7 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
     public Iterator<T> iterator() {
         return new Iterator<T>() {
             private Iterator<T> parent = content.values().iterator();
+            private T current;
 
             @Override
             public boolean hasNext() {
@@ -87,13 +187,16 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
 
             @Override
             public T next() {
-                return parent.next();
+                current = parent.next();
+                return current;
             }
 
             @Override
             public void remove() {
                 if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
                 parent.remove();
+                T removed = current;
+                indexes.forEach(i -> i.delete(removed));
             }
 
             @Override
@@ -109,7 +212,12 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
 
     public boolean remove(Predicate<T> predicate) {
         if (unmodifiable) throw new IllegalStateException("This list has been made unmodifiable");
-        return content.values().removeIf(predicate);
+        if (indexes.isEmpty()) {
+            return content.values().removeIf(predicate);
+        }
+        List<T> toRemove = content.values().stream().filter(predicate).collect(Collectors.toList());
+        toRemove.forEach(this::remove);
+        return !toRemove.isEmpty();
     }
 
     public List<T> sort(Comparator<T> comparator) {
@@ -147,8 +255,21 @@ public class GameObjectList<T extends GameObject> extends AbstractCollection<T>
     }
 
     public GameObjectList<T> getItemsFromCSV(String s) {
-        List<Integer> ids = XmlHelper.loadIntegerListFromXml(s);
-        return content.values().stream().filter(x -> ids.contains(x.getId())).collect(Collectors.toCollection(GameObjectList<T>::new));
+        return getItemsWithIds(XmlHelper.loadIntArrayFromXml(s));
+    }
+
+    /**
+     * @return a new list with the items having any of the ids, ignoring ids not in this list. Runs in O(m log n).
+     */
+    public GameObjectList<T> getItemsWithIds(int[] ids) {
+        GameObjectList<T> result = new GameObjectList<>();
+        for (int id : ids) {
+            T item = content.get(id);
+            if (item != null) {
+                result.content.put(id, item);
+            }
+        }
+        return result;
     }
 
     public GameObjectList<T> getItemsFromIds(Collection<Integer> list) {
@@ -5,14 +5,26 @@ import com.badlogic.gdx.files.FileHandle;
 import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Paths;
 import com.zhsan.common.Point;
+import com.zhsan.common.exception.FileWriteException;
+import com.zhsan.gameobject.pathfinding.TerrainCostGraph;
 import com.zhsan.gameobject.pathfinding.ZhPathFinder;
 import com.zhsan.lua.LuaAI;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Created by Peter on 8/3/2015.
@@ -23,6 +35,11 @@ public class GameScenario {
         public void onTroopAnimationDone();
     }
 
+    /**
+     * Troops move in steps of one tile. Animations of all troops in a step are started together, and the step only
+     * continues after every one of them is done, which may be signalled from any thread. onAttackDone is called
+     * on the thread advancing the day.
+     */
     public interface OnTroopDone {
         public void onStartTroopStep(Troop t, Point oldLoc, Point newLoc, OnTroopAnimationDone onTroopAnimationDone);
 
@@ -31,10 +48,11 @@ public class GameScenario {
         public void onAttackDone(Troop t, HasPointLocationGameObject target, List<DamagePack> damagePacks);
     }
 
-    public static final int SAVE_VERSION = 2;
+    public static final int SAVE_VERSION = 4;
 
     public static final String SCENARIO_PATH = Paths.DATA + "Scenario" + File.separator;
     public static final String SAVE_PATH = Paths.DATA + "Save" + File.separator;
+    public static final String AUTOSAVE_PATH = SAVE_PATH + "AutoSave" + File.separator;
 
     private GameScenarioEventsListener gameScenarioEventsListener;
 
@@ -62,7 +80,31 @@ public class GameScenario {
     private final GameObjectList<Military> militaries;
     private final GameObjectList<Troop> troops;
 
-    private HashMap<Troop, ZhPathFinder> pathFinders = new HashMap<>();
+    private final GameObjectList<Person>.Index<HasPointLocationGameObject> personsByLocation;
+    private final GameObjectList<Military>.Index<HasPointLocationGameObject> militariesByLocation;
+    private final GameObjectList<Architecture>.Index<Section> architecturesBySection;
+    private final GameObjectList<Section>.Index<Faction> sectionsByFaction;
+    private final GameObjectList<Troop>.Index<Section> troopsBySection;
+    private final GameObjectList<Facility>.Index<Architecture> facilitiesByArchitecture;
+
+    private final TileIndex<Architecture> architectureTiles;
+    private final SpatialGrid<Architecture> architectureCenters;
+    private final TileIndex<Facility> facilityTiles;
+    private final TileIndex<Troop> troopTiles;
+
+    private static final ForkJoinPool WORKER_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService SAVE_WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Save writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // only used on the save writer thread
+    private SaveJournal saveJournal;
+
+    private final Map<MilitaryKind, TerrainCostGraph> terrainCostGraphs = new ConcurrentHashMap<>();
+    private volatile TerrainCostGraph anyKindTerrainCostGraph;
 
     public static List<Pair<FileHandle, GameSurvey>> loadAllGameSurveys() {
         List<Pair<FileHandle, GameSurvey>> result = new ArrayList<>();
@@ -84,33 +126,66 @@ public class GameScenario {
     public GameScenario(FileHandle file, boolean newGame, int playerFactionId) {
         gameSurvey = GameSurvey.fromCSV(file);
 
-        // load common data
-        terrainDetails = TerrainDetail.fromCSV(file, this);
-        gameMap = GameMap.fromCSV(file, this);
-        architectureKinds = ArchitectureKind.fromCSV(file, this);
-
-        facilityKinds = FacilityKind.fromCSV(file, this);
+        // tables are loaded in parallel, each as soon as the tables it refers to are loaded
+        CompletableFuture<GameObjectList<TerrainDetail>> terrainDetailsLoad = load(() -> TerrainDetail.fromCSV(file, this));
+        CompletableFuture<GameObjectList<ArchitectureKind>> architectureKindsLoad = load(() -> ArchitectureKind.fromCSV(file, this));
+        CompletableFuture<GameObjectList<MilitaryType>> militaryTypesLoad = load(() -> MilitaryType.fromCSV(file, this));
+        CompletableFuture<GameObjectList<TroopAnimation>> troopAnimationsLoad = load(() -> TroopAnimation.fromCSV(file, this));
+        CompletableFuture<GameObjectList<Faction>> factionsLoad = load(() -> Faction.fromCSV(file, this));
+        List<Runnable> personLinks = new ArrayList<>();
+        CompletableFuture<GameObjectList<Person>> personsLoad = load(() -> Person.fromCSV(file, this, personLinks));
 
-        militaryTypes = MilitaryType.fromCSV(file, this);
-        militaryKinds = MilitaryKind.fromCSV(file, this);
+        terrainDetails = join(terrainDetailsLoad);
+        CompletableFuture<GameMap> gameMapLoad = load(() -> GameMap.fromCSV(file, this));
+        CompletableFuture<GameObjectList<FacilityKind>> facilityKindsLoad = load(() -> FacilityKind.fromCSV(file, this));
 
-        militaryTerrains = MilitaryTerrain.fromCSV(file, this);
+        militaryTypes = join(militaryTypesLoad);
+        CompletableFuture<GameObjectList<MilitaryKind>> militaryKindsLoad = load(() -> MilitaryKind.fromCSV(file, this));
 
-        troopAnimations = TroopAnimation.fromCSV(file, this);
+        factions = join(factionsLoad);
+        CompletableFuture<GameData> gameDataLoad = load(() -> GameData.fromCSV(file, this));
+        sections = Section.fromCSV(file, this);
 
-        // load game objects
-        int version = gameSurvey.getVersion();
+        militaryKinds = join(militaryKindsLoad);
+        CompletableFuture<GameObjectList<MilitaryTerrain>> militaryTerrainsLoad = load(() -> MilitaryTerrain.fromCSV(file, this));
 
-        factions = Faction.fromCSV(file, this);
-        sections = Section.fromCSV(file, this);
+        architectureKinds = join(architectureKindsLoad);
         architectures = Architecture.fromCSV(file, this);
+
+        facilityKinds = join(facilityKindsLoad);
+        CompletableFuture<GameObjectList<Facility>> facilitiesLoad = load(() -> Facility.fromCSV(file, this));
+
         troops = Troop.fromCSV(file, this);
-        persons = Person.fromCSV(file, this);
+        persons = join(personsLoad);
         militaries = Military.fromCSV(file, this);
 
-        facilities = Facility.fromCSV(file, this);
+        militaryTerrains = join(militaryTerrainsLoad);
+        troopAnimations = join(troopAnimationsLoad);
+        facilities = join(facilitiesLoad);
+        gameMap = join(gameMapLoad);
+        gameData = join(gameDataLoad);
+        if (gameData.getRandomSeed() == null) {
+            // a new game, or a save from before seeds were kept
+            gameData.setRandomSeed(new Random().nextLong());
+        }
+
+        // link references that could not be resolved while the tables were loading
+        personLinks.forEach(Runnable::run);
 
-        gameData = GameData.fromCSV(file, this);
+        personsByLocation = persons.addIndex(Person::getLocation);
+        militariesByLocation = militaries.addIndex(Military::getLocation);
+        architecturesBySection = architectures.addIndex(Architecture::getBelongedSection);
+        sectionsByFaction = sections.addIndex(Section::getBelongedFaction);
+        troopsBySection = troops.addIndex(Troop::getBelongedSection);
+        facilitiesByArchitecture = facilities.addIndex(Facility::getBelongedArchitecture);
+
+        architectureTiles = new TileIndex<>(gameMap.getWidth(), gameMap.getHeight());
+        architectures.forEach(a -> a.getLocations().forEach(p -> architectureTiles.put(p, a)));
+        architectureCenters = new SpatialGrid<>(architectures, Architecture::getCenter, gameMap.getWidth(), gameMap.getHeight());
+        facilityTiles = new TileIndex<>(gameMap.getWidth(), gameMap.getHeight());
+        facilities.forEach(f -> facilityTiles.put(f.getLocation(), f));
+        troopTiles = new TileIndex<>(gameMap.getWidth(), gameMap.getHeight());
+        troops.forEach(t -> troopTiles.put(t.getPosition(), t));
 
         if (newGame) {
             Faction playerFaction = factions.get(playerFactionId);
@@ -126,46 +201,33 @@ public class GameScenario {
         setupFacilities();
     }
 
-    private final void populateConnections(Architecture b, int distance) {
-        ZhPathFinder pathFinder = new ZhPathFinder(this, this.getGameMap(), null);
-        for (Architecture a : this.getArchitectures()) {
-            if (a == b) continue;
-            if (b.getPosition().taxiDistanceTo(a.getPosition()) <= distance) {
-                List<Point> path = pathFinder.findPath(b.getPosition(), a.getPosition());
-                if (path != null && path.size() <=distance) {
-                    boolean nearAnyArch = false;
-                    for (Point p : path) {
-                        Architecture closestArch = this.getArchitectures().getAll().stream()
-                                .filter(x -> x.getPosition().taxiDistanceTo(p) < distance)
-                                .min((x, y) -> x.getPosition().taxiDistanceTo(p) - y.getPosition().taxiDistanceTo(p)).orElse(null);
-                        if (closestArch != null && closestArch != a && closestArch != b) {
-                            int d1 = a.getPosition().taxiDistanceTo(p);
-                            int d2 = b.getPosition().taxiDistanceTo(p);
-                            int dc = closestArch.getPosition().taxiDistanceTo(p);
-                            if (dc < d1 && dc < d2) {
-                                nearAnyArch = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (!nearAnyArch) {
-                        b.addConnectedArchitectures(a);
-                        a.addConnectedArchitectures(b);
-                    }
-                }
+    private static <T> CompletableFuture<T> load(Supplier<T> loader) {
+        return CompletableFuture.supplyAsync(loader, WORKER_POOL);
+    }
+
+    private static <T> T join(CompletableFuture<T> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
             }
+            throw e;
         }
     }
 
     private final void setupArchitectureLinks() {
-        if (this.getArchitectures().filter(p -> p.getConnectedArchitectures().size() == 0).size() > 0) {
-            for (Architecture b : this.getArchitectures()) {
-                populateConnections(b, GlobalVariables.maxPathLengthAsConnected);
-                if (b.getConnectedArchitectures().size() == 0) {
-                    populateConnections(b, GlobalVariables.maxPathLengthAsConnected2);
-                }
-            }
+        long fingerprint = ArchitectureLinks.fingerprint(this);
+        Long savedFingerprint = gameData.getArchitectureLinksFingerprint();
+        if (savedFingerprint != null && savedFingerprint != fingerprint) {
+            architectures.forEach(Architecture::clearConnectedArchitectures);
+            ArchitectureLinks.build(this);
+        } else if (this.getArchitectures().filter(p -> p.getConnectedArchitectures().size() == 0).size() > 0) {
+            ArchitectureLinks.build(this);
         }
+        gameData.setArchitectureLinksFingerprint(fingerprint);
     }
 
     private final void setupLeaders() {
@@ -215,6 +277,7 @@ public class GameScenario {
                             f.setKind(kind);
                             f.setLocation(p);
                             facilities.add(f);
+                            facilityTiles.put(p, f);
                             break;
                         }
                     }
@@ -268,7 +331,7 @@ public class GameScenario {
     }
 
     public Person getPerson(int id) {
-        return persons.filter(p -> p.getId() == id).getFirst();
+        return persons.get(id);
     }
 
     public GameObjectList<Person> getPersons() {
@@ -289,15 +352,107 @@ public class GameScenario {
     }
 
     public Architecture getArchitectureAt(Point p) {
-        return Caches.get(Caches.architectureAtPoint, p, () -> architectures.filter(a -> a.getLocations().contains(p)).getFirst());
+        return architectureTiles.get(p);
+    }
+
+    public Architecture getArchitectureAt(int x, int y) {
+        return architectureTiles.get(x, y);
     }
 
     public Facility getFacilityAt(Point p) {
-        return facilities.filter(f -> f.getLocation().equals(p)).getFirst();
+        return facilityTiles.get(p);
+    }
+
+    /**
+     * Run the action on each architecture whose center is in the rectangle from lo to hi, bounds included
+     */
+    public void forEachArchitectureIn(Point lo, Point hi, Consumer<Architecture> action) {
+        architectureCenters.forEachIn(lo.x, lo.y, hi.x, hi.y, action);
+    }
+
+    /**
+     * Run the action on each facility located in the rectangle from lo to hi, bounds included
+     */
+    public void forEachFacilityIn(Point lo, Point hi, Consumer<Facility> action) {
+        facilityTiles.forEachIn(lo.x, lo.y, hi.x, hi.y, action);
+    }
+
+    /**
+     * Run the action on each troop positioned in the rectangle from lo to hi, bounds included
+     */
+    public void forEachTroopIn(Point lo, Point hi, Consumer<Troop> action) {
+        troopTiles.forEachIn(lo.x, lo.y, hi.x, hi.y, action);
     }
 
     public Troop getTroopAt(Point p) {
-        return troops.filter(f -> f.getPosition().equals(p)).getFirst();
+        return troopTiles.get(p);
+    }
+
+    public Troop getTroopAt(int x, int y) {
+        return troopTiles.get(x, y);
+    }
+
+    void troopMoved(Troop t, Point from, Point to) {
+        if (troops != null && troops.get(t.getId()) == t) {
+            troopTiles.move(from, to, t);
+        }
+    }
+
+    void facilityMoved(Facility f, Point from, Point to) {
+        if (facilities != null && facilities.get(f.getId()) == f) {
+            facilityTiles.move(from, to, f);
+        }
+    }
+
+    GameObjectList<Person> getPersonsAt(HasPointLocationGameObject location) {
+        return personsByLocation.get(location);
+    }
+
+    GameObjectList<Military> getMilitariesAt(HasPointLocationGameObject location) {
+        return militariesByLocation.get(location);
+    }
+
+    GameObjectList<Architecture> getArchitecturesOf(Section section) {
+        return architecturesBySection.get(section);
+    }
+
+    GameObjectList<Section> getSectionsOf(Faction faction) {
+        return sectionsByFaction.get(faction);
+    }
+
+    GameObjectList<Troop> getTroopsOf(Section section) {
+        return troopsBySection.get(section);
+    }
+
+    GameObjectList<Facility> getFacilitiesOf(Architecture architecture) {
+        return facilitiesByArchitecture.get(architecture);
+    }
+
+    void reindex(Person p) {
+        if (persons != null) persons.reindex(p);
+    }
+
+    void reindex(Military m) {
+        if (militaries != null) militaries.reindex(m);
+    }
+
+    void reindex(Architecture a) {
+        if (architectures != null) architectures.reindex(a);
+    }
+
+    void architectureSectionChanged(Architecture a, Section oldSection, Section newSection) {
+        GameScenarioEventsListener listener = gameScenarioEventsListener;
+        if (listener != null) {
+            listener.onArchitectureSectionChanged(a, oldSection, newSection);
+        }
+    }
+
+    void reindex(Troop t) {
+        if (troops != null) troops.reindex(t);
+    }
+
+    void reindex(Facility f) {
+        if (facilities != null) facilities.reindex(f);
     }
 
     public GameObjectList<ArchitectureKind> getArchitectureKinds() {
@@ -316,6 +471,17 @@ public class GameScenario {
         return gameData;
     }
 
+    /**
+     * @return A generator for the random choices the object makes today. It depends only on the game's seed, the day
+     * and the object, so the choices are the same whichever thread makes them, and in whichever order.
+     */
+    Random getDailyRandom(GameObject o) {
+        long seed = gameData.getRandomSeed();
+        seed = seed * 0x9E3779B97F4A7C15L + gameData.getDayPassed();
+        seed = seed * 0x9E3779B97F4A7C15L + o.getId();
+        return new Random(seed);
+    }
+
     public Faction getCurrentPlayer() {
         return gameData.getCurrentPlayer();
     }
@@ -344,7 +510,7 @@ public class GameScenario {
     }
 
     public Military getMilitary(int id) {
-        return militaries.filter(x -> x.getId() == id).getFirst();
+        return militaries.get(id);
     }
 
     public GameObjectList<TroopAnimation> getTroopAnimations() {
@@ -359,6 +525,7 @@ public class GameScenario {
         if (removeMilitary) {
             militaries.remove(t.getMilitary());
         }
+        troopTiles.clear(t.getPosition(), t);
         troops.remove(t);
     }
 
@@ -386,11 +553,23 @@ public class GameScenario {
         return mt;
     }
 
-    public ZhPathFinder getPathFinder(Troop kind) {
-        if (pathFinders.get(kind) == null) {
-            pathFinders.put(kind, new ZhPathFinder(this, gameMap, kind));
+    public ZhPathFinder getPathFinder(Troop troop) {
+        return new ZhPathFinder(this, gameMap, troop);
+    }
+
+    /**
+     * Get the terrain cost graph shared by all troops of the kind
+     * @param kind Military kind, or null for a graph of tiles passable by any military kind
+     * @return The graph
+     */
+    public TerrainCostGraph getTerrainCostGraph(MilitaryKind kind) {
+        if (kind == null) {
+            if (anyKindTerrainCostGraph == null) {
+                anyKindTerrainCostGraph = TerrainCostGraph.forAnyKind(this, gameMap);
+            }
+            return anyKindTerrainCostGraph;
         }
-        return pathFinders.get(kind);
+        return terrainCostGraphs.computeIfAbsent(kind, k -> TerrainCostGraph.forKind(this, gameMap, k));
     }
 
     public Military createMilitary(Architecture location, MilitaryKind kind) {
@@ -408,52 +587,44 @@ public class GameScenario {
         return m;
     }
 
+    /**
+     * Same as advancing architectures then persons one by one in id order, partitioned over the day tick pool.
+     * An architecture only changes its own state and the persons and militaries located in it, so architectures
+     * run independently. Persons not arriving today only count down their own moving days in parallel. Those arriving
+     * are then advanced one by one in id order, as arriving may assign a mayor among the persons already there, which
+     * must not include those arriving later the same day.
+     */
+    private void advanceObjectsParallel() {
+        List<Architecture> architectureList = new ArrayList<>(architectures.getAll());
+        WORKER_POOL.submit(() -> architectureList.parallelStream().forEach(Architecture::advanceDay)).join();
+
+        List<Person> personList = new ArrayList<>(persons.getAll());
+        List<Person> arriving = WORKER_POOL.submit(() -> personList.parallelStream()
+                .filter(Person::advanceMovingDaysBeforeArrival)
+                .collect(Collectors.toList())).join();
+        arriving.forEach(Person::advanceDay);
+    }
+
     public void advanceDay(OnTroopDone onTroopDone) {
         gameData.advanceDay();
-        architectures.getAll().stream().forEach(Architecture::advanceDay);
-        persons.getAll().stream().forEach(Person::advanceDay);
+        if (GlobalVariables.parallelDayTick) {
+            advanceObjectsParallel();
+        } else {
+            architectures.getAll().stream().forEach(Architecture::advanceDay);
+            persons.getAll().stream().forEach(Person::advanceDay);
+        }
 
         troops.getAll().stream().forEach(Troop::initExecuteOrder);
+        TroopMovement movement = new TroopMovement(WORKER_POOL, onTroopDone);
         List<Troop> movingTroops = new ArrayList<>(troops.getAll());
-        do {
-            // TODO move all troops in parallel
-            Iterator<Troop> it = movingTroops.iterator();
-            while (it.hasNext()) {
-                Troop t = it.next();
-                Point oldLoc = t.getPosition();
-
-                HasPointLocationGameObject target = t.canAttackTarget();
-                if (!t.stepForward()) {
-                    if (target != null) {
-                        onTroopDone.onStartAttackStep(t, target, () -> {
-                            List<DamagePack> damagePacks = t.attack();
-                            onTroopDone.onAttackDone(t, target, damagePacks);
-                        });
-                    }
-                    it.remove();
-                } else {
-                    Point newLoc = t.getPosition();
-                    if (!oldLoc.equals(newLoc)) {
-                        onTroopDone.onStartTroopStep(t, oldLoc, newLoc, () -> {
-                            if (t.tryEnter(newLoc)) {
-                                it.remove();
-                                return;
-                            }
-                            if (target != null) {
-                                List<DamagePack> damagePacks = t.attack();
-                                onTroopDone.onAttackDone(t, target, damagePacks);
-                            }
-                        });
-                    } else {
-                        it.remove();
-                    }
-                }
-            }
-        } while (movingTroops.size() > 0);
+        while (movingTroops.size() > 0) {
+            movingTroops = movement.step(movingTroops);
+        }
     }
 
     public void addTroop(Troop t) {
         troops.add(t);
+        troopTiles.put(t.getPosition(), t);
     }
 
     public enum Season {
@@ -482,7 +653,7 @@ public class GameScenario {
         throw new IllegalStateException("Unexpected month: " + date.getMonth().getValue());
     }
 
-    public void save(FileHandle out) {
+    private FileHandle prepareSaveDirectory(FileHandle out) {
         FileHandle result = out;
         if (result == null) {
             FileHandle root = Gdx.files.external(SAVE_PATH);
@@ -491,13 +662,108 @@ public class GameScenario {
                 result = root.child("Save" + i);
                 i++;
             } while (result.exists());
-            result.mkdirs();
         }
+        result.mkdirs();
 
         result.emptyDirectory();
+        return result;
+    }
 
-        GameSurvey.toCSV(result, gameSurvey);
+    /**
+     * Save the game as a binary {@link SaveSnapshot}
+     * @param out Save directory, or null for a new one
+     */
+    public void save(FileHandle out) {
+        join(saveInBackground(out));
+    }
+
+    /**
+     * Save the game as a binary {@link SaveSnapshot} without waiting for it to be written. The tables that change during
+     * a game are copied as rows on the calling thread, which must be the one advancing days, and a background thread
+     * writes them while the game goes on. Saves are written one at a time, in the order they are made.
+     * @param out Save directory, or null for a new one
+     * @return Completes with the save directory once the save is written
+     */
+    public CompletableFuture<FileHandle> saveInBackground(FileHandle out) {
+        Map<String, List<String[]>> rows = changingTableRows();
+        return CompletableFuture.supplyAsync(() -> writeSnapshot(out, rows), SAVE_WRITER);
+    }
+
+    /**
+     * Save the game to the directory in the background, as a binary snapshot the first time, then by appending only the
+     * rows changed since the previous save to the journal of the snapshot. The snapshot is written again, emptying the
+     * journal, once the journal grows to half the size of the snapshot. Like {@link #saveInBackground(FileHandle)},
+     * the rows are copied on the calling thread.
+     * @return Completes with the save directory once the save is written
+     */
+    public CompletableFuture<FileHandle> autosave(FileHandle out) {
+        Map<String, List<String[]>> rows = changingTableRows();
+        return CompletableFuture.supplyAsync(() -> {
+            if (saveJournal == null || !saveJournal.canAppend(out)) {
+                return writeSnapshot(out, rows);
+            }
+            try {
+                saveJournal.append(rows);
+            } catch (IOException e) {
+                throw new FileWriteException(out.child(SaveSnapshot.JOURNAL_FILE).path(), e);
+            }
+            return out;
+        }, SAVE_WRITER);
+    }
+
+    /**
+     * Save the game as CSV files, which can be edited, or imported as a scenario
+     * @param out Save directory, or null for a new one
+     */
+    public void saveAsCSV(FileHandle out) {
+        Map<String, List<String[]>> rows = changingTableRows();
+        join(CompletableFuture.supplyAsync(() -> {
+            FileHandle result = prepareSaveDirectory(out);
+            saveTables(result, rows);
+            return result;
+        }, SAVE_WRITER));
+    }
+
+    /**
+     * Wait until every save made so far is written
+     */
+    public static void finishSaves() {
+        join(CompletableFuture.runAsync(() -> {}, SAVE_WRITER));
+    }
+
+    private FileHandle writeSnapshot(FileHandle out, Map<String, List<String[]>> rows) {
+        FileHandle result = prepareSaveDirectory(out);
+        try {
+            SaveSnapshot.create(result);
+        } catch (IOException e) {
+            throw new FileWriteException(result.child(SaveSnapshot.SAVE_FILE).path(), e);
+        }
+        saveTables(result, rows);
+        saveJournal = new SaveJournal(result, rows);
+        return result;
+    }
 
+    /**
+     * @return Rows of the tables that change during a game, by file name
+     */
+    private Map<String, List<String[]>> changingTableRows() {
+        Map<String, List<String[]>> result = new LinkedHashMap<>();
+        result.put(GameSurvey.SAVE_FILE, TableWriter.rowsOf(w -> GameSurvey.toCSV(w, gameSurvey)));
+        result.put(GameData.SAVE_FILE, TableWriter.rowsOf(w -> GameData.toCSV(w, gameData)));
+        result.put(Architecture.SAVE_FILE, TableWriter.rowsOf(w -> Architecture.toCSV(w, new GameObjectList<>(architectures, true))));
+        result.put(Section.SAVE_FILE, TableWriter.rowsOf(w -> Section.toCSV(w, new GameObjectList<>(sections, true))));
+        result.put(Faction.SAVE_FILE, TableWriter.rowsOf(w -> Faction.toCSV(w, new GameObjectList<>(factions, true))));
+        result.put(Person.SAVE_FILE, TableWriter.rowsOf(w -> Person.toCSV(w, new GameObjectList<>(persons, true))));
+        result.put(Military.SAVE_FILE, TableWriter.rowsOf(w -> Military.toCSV(w, new GameObjectList<>(militaries, true))));
+        result.put(Troop.SAVE_FILE, TableWriter.rowsOf(w -> Troop.toCSV(w, new GameObjectList<>(troops, true))));
+        result.put(Facility.SAVE_FILE, TableWriter.rowsOf(w -> Facility.toCSV(w, new GameObjectList<>(facilities, true))));
+        return result;
+    }
+
+    /**
+     * Write the tables that do not change during a game, and the rows of the ones that do
+     */
+    private void saveTables(FileHandle result, Map<String, List<String[]>> rows) {
         TerrainDetail.toCSV(result, terrainDetails);
         GameMap.toCSV(result, gameMap);
         ArchitectureKind.toCSV(result, new GameObjectList<>(architectureKinds, true));
@@ -511,16 +777,14 @@ public class GameScenario {
 
         TroopAnimation.toCSV(result, new GameObjectList<>(troopAnimations, true));
 
-        GameData.toCSV(result, gameData);
-
-        Architecture.toCSV(result, new GameObjectList<>(architectures, true));
-        Section.toCSV(result, new GameObjectList<>(sections, true));
-        Faction.toCSV(result, new GameObjectList<>(factions, true));
-        Person.toCSV(result, new GameObjectList<>(persons, true));
-        Military.toCSV(result, new GameObjectList<>(militaries, true));
-        Troop.toCSV(result, new GameObjectList<>(troops, true));
-
-        Facility.toCSV(result, new GameObjectList<>(facilities, true));
+        for (Map.Entry<String, List<String[]>> table : rows.entrySet()) {
+            FileHandle f = result.child(table.getKey());
+            try (TableWriter writer = TableWriter.create(f)) {
+                table.getValue().forEach(writer::writeNext);
+            } catch (IOException e) {
+                throw new FileWriteException(f.path(), e);
+            }
+        }
     }
 
 }
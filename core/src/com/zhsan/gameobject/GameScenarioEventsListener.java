@@ -7,4 +7,10 @@ public interface GameScenarioEventsListener {
 
     public default void onOccupyArchitecture(Architecture architecture, Faction oldFaction, Faction newFaction){}
 
+    /**
+     * Called whenever an architecture is moved to another section, possibly of another faction. May be called on
+     * the AI threads.
+     */
+    public default void onArchitectureSectionChanged(Architecture architecture, Section oldSection, Section newSection){}
+
 }
@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.Point;
 import com.zhsan.common.exception.EmptyFileException;
 import com.zhsan.common.exception.FileReadException;
@@ -10,7 +8,6 @@ import com.zhsan.common.exception.FileWriteException;
 import com.zhsan.gamecomponents.GlobalStrings;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -48,7 +45,7 @@ public final class GameSurvey {
 
     public static final GameSurvey fromCSV(FileHandle root) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -84,24 +81,27 @@ public final class GameSurvey {
 
     public static final void toCSV(FileHandle root, GameSurvey gameSurvey) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.GAME_SURVEY_SAVE_HEADER).split(","));
-            writer.writeNext(new String[]{
-                    gameSurvey.title,
-                    String.valueOf(gameSurvey.startDate.getYear()),
-                    String.valueOf(gameSurvey.startDate.getMonth().getValue()),
-                    String.valueOf(gameSurvey.startDate.getDayOfMonth()),
-                    SAVE_DATE_FORMAT.format(LocalDateTime.now()),
-                    gameSurvey.message,
-                    gameSurvey.cameraPosition.toCSV(),
-                    gameSurvey.description,
-                    gameSurvey.resourcePackName,
-                    String.valueOf(GameScenario.SAVE_VERSION)
-            });
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, gameSurvey);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameSurvey gameSurvey) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.GAME_SURVEY_SAVE_HEADER).split(","));
+        writer.writeNext(new String[]{
+                gameSurvey.title,
+                String.valueOf(gameSurvey.startDate.getYear()),
+                String.valueOf(gameSurvey.startDate.getMonth().getValue()),
+                String.valueOf(gameSurvey.startDate.getDayOfMonth()),
+                SAVE_DATE_FORMAT.format(LocalDateTime.now()),
+                gameSurvey.message,
+                gameSurvey.cameraPosition.toCSV(),
+                gameSurvey.description,
+                gameSurvey.resourcePackName,
+                String.valueOf(GameScenario.SAVE_VERSION)
+        });
     }
 
     public String getTitle() {
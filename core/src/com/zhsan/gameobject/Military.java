@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Pair;
 import com.zhsan.common.Point;
@@ -13,7 +11,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 /**
  * Created by Peter on 19/7/2015.
@@ -60,12 +57,11 @@ public class Military implements HasPointBelongsFactionGameObject {
             return -1;
         }
 
-        public static LocationType fromCSV(String type, String id, GameScenario scen) {
-            int typeInt = Integer.parseInt(type);
-            if (typeInt == ARCHITECTURE) {
-                return new LocationType(scen.getArchitectures().get(Integer.parseInt(id)));
-            } else if (typeInt == TROOP) {
-                return new LocationType(scen.getTroops().get(Integer.parseInt(id)));
+        public static LocationType fromCSV(int type, int id, GameScenario scen) {
+            if (type == ARCHITECTURE) {
+                return new LocationType(scen.getArchitectures().get(id));
+            } else if (type == TROOP) {
+                return new LocationType(scen.getTroops().get(id));
             } else {
                 assert false;
                 return null;
@@ -131,24 +127,24 @@ public class Military implements HasPointBelongsFactionGameObject {
         GameObjectList<Military> result = new GameObjectList<>();
 
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
-            String[] line;
+        try (TableReader reader = TableReader.open(f)) {
+            TableRow row;
             int index = 0;
-            while ((line = reader.readNext()) != null) {
+            while ((row = reader.nextRow()) != null) {
                 index++;
                 if (index == 1) continue; // skip first line.
 
-                Military data = new Military(Integer.parseInt(line[0]), scen);
-                data.setAiTags(line[1]);
-                data.name = line[2];
-                data.kind = scen.getMilitaryKinds().get(Integer.parseInt(line[3]));
-                data.location = LocationType.fromCSV(line[4], line[5], scen);
-                data.quantity = Integer.parseInt(line[6]);
-                data.morale = Integer.parseInt(line[7]);
-                data.combativity = Integer.parseInt(line[8]);
-                data.leader = scen.getPerson(Integer.parseInt(line[9]));
-                data.persons = scen.getPersons().getItemsFromCSV(line[10]);
-                data.movingDays = Integer.parseInt(line[11]);
+                Military data = new Military(row.getInt(0), scen);
+                data.setAiTags(row.getString(1));
+                data.name = row.getString(2);
+                data.kind = scen.getMilitaryKinds().get(row.getInt(3));
+                data.location = LocationType.fromCSV(row.getInt(4), row.getInt(5), scen);
+                data.quantity = row.getInt(6);
+                data.morale = row.getInt(7);
+                data.combativity = row.getInt(8);
+                data.leader = scen.getPerson(row.getInt(9));
+                data.persons = scen.getPersons().getItemsWithIds(row.getIntArray(10));
+                data.movingDays = row.getInt(11);
 
                 result.add(data);
             }
@@ -161,30 +157,34 @@ public class Military implements HasPointBelongsFactionGameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Military> types) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.MILITARY_SAVE_HEADER).split(","));
-            for (Military detail : types) {
-                Pair<String, String> savedLocation = detail.location.toCSV();
-                writer.writeNext(new String[]{
-                        String.valueOf(detail.getId()),
-                        detail.getAiTags(),
-                        detail.getName(),
-                        String.valueOf(detail.kind.getId()),
-                        savedLocation.x,
-                        savedLocation.y,
-                        String.valueOf(detail.quantity),
-                        String.valueOf(detail.morale),
-                        String.valueOf(detail.combativity),
-                        String.valueOf(detail.leader == null ? -1 : detail.leader.getId()),
-                        detail.persons.toCSV(),
-                        String.valueOf(detail.movingDays)
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, types);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
     }
 
+    static void toCSV(TableWriter writer, GameObjectList<Military> types) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.MILITARY_SAVE_HEADER).split(","));
+        for (Military detail : types) {
+            Pair<String, String> savedLocation = detail.location.toCSV();
+            writer.writeNext(new String[]{
+                    String.valueOf(detail.getId()),
+                    detail.getAiTags(),
+                    detail.getName(),
+                    String.valueOf(detail.kind.getId()),
+                    savedLocation.x,
+                    savedLocation.y,
+                    String.valueOf(detail.quantity),
+                    String.valueOf(detail.morale),
+                    String.valueOf(detail.combativity),
+                    String.valueOf(detail.leader == null ? -1 : detail.leader.getId()),
+                    detail.persons.toCSV(),
+                    String.valueOf(detail.movingDays)
+            });
+        }
+    }
+
     public Military(int id, GameScenario scen) {
         this.id = id;
         this.scenario = scen;
@@ -209,8 +209,13 @@ public class Military implements HasPointBelongsFactionGameObject {
         this.kind = kind;
     }
 
+    private void setLocation(LocationType location) {
+        this.location = location;
+        scenario.reindex(this);
+    }
+
     public void setLocation(Architecture location) {
-        this.location = new LocationType(location);
+        this.setLocation(new LocationType(location));
         if (this.leader != null) {
             this.leader.moveToArchitectureInstantly(location);
         }
@@ -371,7 +376,7 @@ public class Military implements HasPointBelongsFactionGameObject {
         t.setStartArchitecture(a);
         scenario.addTroop(t);
 
-        location = new LocationType(t);
+        this.setLocation(new LocationType(t));
         this.leader.joinTroop(t);
         this.persons.forEach(p -> p.joinTroop(t));
 
@@ -388,6 +393,6 @@ public class Military implements HasPointBelongsFactionGameObject {
         }
         this.movingDays = (int) Math.max(1, Math.round(Point.distance(((Architecture) this.getLocation()).getPosition(), a.getPosition())
                 / GlobalVariables.militaryMovingSpeed * this.getKind().getMovability()));
-        this.location = new LocationType(a);
+        this.setLocation(new LocationType(a));
     }
 }
@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
 import com.zhsan.gamecomponents.GlobalStrings;
@@ -10,7 +8,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 /**
  * Created by Peter on 11/8/2015.
@@ -62,7 +59,7 @@ public class MilitaryTerrain implements GameObject {
         GameObjectList<MilitaryTerrain> result = new GameObjectList<>();
 
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
+        try (TableReader reader = TableReader.open(f)) {
             String[] line;
             int index = 0;
             while ((line = reader.readNext()) != null) {
@@ -90,7 +87,7 @@ public class MilitaryTerrain implements GameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<MilitaryTerrain> kinds) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
+        try (TableWriter writer = TableWriter.create(f)) {
             writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.MILITARY_TERRAIN_SAVE_HEADER).split(","));
             for (MilitaryTerrain detail : kinds) {
                 writer.writeNext(new String[]{
@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Pair;
 import com.zhsan.common.Point;
@@ -13,7 +11,7 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.List;
 
 /**
  * Created by Peter on 24/5/2015.
@@ -93,15 +91,14 @@ public class Person implements HasPointBelongsFactionGameObject {
             return -1;
         }
 
-        public static LocationType fromCSV(String type, String id, GameScenario scen) {
-            int typeInt = Integer.parseInt(type);
-            switch (typeInt) {
+        public static LocationType fromCSV(int type, int id, GameScenario scen) {
+            switch (type) {
                 case NONE:
                     return new LocationType();
                 case ARCHITECTURE:
-                    return new LocationType(scen.getArchitectures().get(Integer.parseInt(id)));
+                    return new LocationType(scen.getArchitectures().get(id));
                 case TROOP:
-                    return new LocationType(scen.getTroops().get(Integer.parseInt(id)));
+                    return new LocationType(scen.getTroops().get(id));
                 default:
                     assert false;
                     return null;
@@ -224,32 +221,38 @@ public class Person implements HasPointBelongsFactionGameObject {
         this.scenario = scen;
     }
 
-    public static final GameObjectList<Person> fromCSV(FileHandle root, @NotNull GameScenario scen) {
+    /**
+     * Locations refer to architectures and troops, which may not be loaded yet. They are set by the runnables added to
+     * links, to be run once all tables are loaded.
+     */
+    public static final GameObjectList<Person> fromCSV(FileHandle root, @NotNull GameScenario scen, List<Runnable> links) {
         GameObjectList<Person> result = new GameObjectList<>();
 
         FileHandle f = root.child(Person.SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
-            String[] line;
+        try (TableReader reader = TableReader.open(f)) {
+            TableRow row;
             int index = 0;
-            while ((line = reader.readNext()) != null) {
+            while ((row = reader.nextRow()) != null) {
                 index++;
                 if (index == 1) continue; // skip first line.
 
-                Person data = new Person(Integer.parseInt(line[0]), scen);
-                data.setAiTags(line[1]);
-                data.portraitId = Integer.parseInt(line[2]);
-                data.surname = line[3];
-                data.givenName = line[4];
-                data.calledName = line[5];
-                data.state = Person.State.fromCSV(line[6]);
-                data.location = LocationType.fromCSV(line[7], line[8], scen);
-                data.movingDays = Integer.parseInt(line[9]);
-                data.strength = Integer.parseInt(line[10]);
-                data.command = Integer.parseInt(line[11]);
-                data.intelligence = Integer.parseInt(line[12]);
-                data.politics = Integer.parseInt(line[13]);
-                data.glamour = Integer.parseInt(line[14]);
-                data.doingWork = Person.DoingWork.fromCSV(line[15]);
+                Person data = new Person(row.getInt(0), scen);
+                data.setAiTags(row.getString(1));
+                data.portraitId = row.getInt(2);
+                data.surname = row.getString(3);
+                data.givenName = row.getString(4);
+                data.calledName = row.getString(5);
+                data.state = Person.State.fromCSV(row.getString(6));
+                int locationType = row.getInt(7);
+                int locationId = row.getInt(8);
+                links.add(() -> data.location = LocationType.fromCSV(locationType, locationId, scen));
+                data.movingDays = row.getInt(9);
+                data.strength = row.getInt(10);
+                data.command = row.getInt(11);
+                data.intelligence = row.getInt(12);
+                data.politics = row.getInt(13);
+                data.glamour = row.getInt(14);
+                data.doingWork = Person.DoingWork.fromCSV(row.getString(15));
 
                 result.add(data);
             }
@@ -262,33 +265,36 @@ public class Person implements HasPointBelongsFactionGameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Person> data) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.PERSON_SAVE_HEADER).split(","));
-            for (Person d : data) {
-                Pair<String, String> savedLocation = d.location == null ? LocationType.nullToCSV() : d.location.toCSV();
-                writer.writeNext(new String[]{
-                        String.valueOf(d.getId()),
-                        d.getAiTags(),
-                        String.valueOf(d.portraitId),
-                        d.surname,
-                        d.givenName,
-                        d.calledName,
-                        d.state.toCSV(),
-                        savedLocation.x,
-                        savedLocation.y,
-                        String.valueOf(d.movingDays),
-                        String.valueOf(d.command),
-                        String.valueOf(d.strength),
-                        String.valueOf(d.intelligence),
-                        String.valueOf(d.politics),
-                        String.valueOf(d.glamour),
-                        d.doingWork.toCSV()
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, data);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameObjectList<Person> data) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.PERSON_SAVE_HEADER).split(","));
+        for (Person d : data) {
+            Pair<String, String> savedLocation = d.location == null ? LocationType.nullToCSV() : d.location.toCSV();
+            writer.writeNext(new String[]{
+                    String.valueOf(d.getId()),
+                    d.getAiTags(),
+                    String.valueOf(d.portraitId),
+                    d.surname,
+                    d.givenName,
+                    d.calledName,
+                    d.state.toCSV(),
+                    savedLocation.x,
+                    savedLocation.y,
+                    String.valueOf(d.movingDays),
+                    String.valueOf(d.command),
+                    String.valueOf(d.strength),
+                    String.valueOf(d.intelligence),
+                    String.valueOf(d.politics),
+                    String.valueOf(d.glamour),
+                    d.doingWork.toCSV()
+            });
+        }
     }
 
 
@@ -320,6 +326,11 @@ public class Person implements HasPointBelongsFactionGameObject {
         return location == null ? null : location.get();
     }
 
+    private void setLocation(LocationType location) {
+        this.location = location;
+        scenario.reindex(this);
+    }
+
     @Override
     public Point getPosition() {
         return location == null ? null : location.get().getPosition();
@@ -403,7 +414,7 @@ public class Person implements HasPointBelongsFactionGameObject {
         } else {
             this.setDoingWork(DoingWork.NONE);
         }
-        this.location = newLocation;
+        this.setLocation(newLocation);
     }
 
     public void setDoingWork(DoingWork work) {
@@ -433,7 +444,7 @@ public class Person implements HasPointBelongsFactionGameObject {
             this.handoverMayor(((Architecture) this.location.get()).pickMayor(this), new LocationType(t));
         } else {
             this.setDoingWork(DoingWork.NONE);
-            this.location = new LocationType(t);
+            this.setLocation(new LocationType(t));
         }
     }
 
@@ -452,16 +463,16 @@ public class Person implements HasPointBelongsFactionGameObject {
             this.handoverMayor(from.pickMayor(this), new LocationType(a));
         }
         this.movingDays = (int) Math.max(1, Math.round(Point.distance(from.getPosition(), a.getPosition()) / GlobalVariables.personMovingSpeed));
-        this.location = new LocationType(a);
+        this.setLocation(new LocationType(a));
     }
 
     public void moveToArchitecture(Point from, Architecture a) {
         this.movingDays = (int) Math.max(1, Math.round(Point.distance(from, a.getPosition()) / GlobalVariables.personMovingSpeed));
-        this.location = new LocationType(a);
+        this.setLocation(new LocationType(a));
     }
 
     public void moveToArchitectureInstantly(Architecture a) {
-        this.location = new LocationType(a);
+        this.setLocation(new LocationType(a));
         arriveAtArchitecture(a);
     }
 
@@ -484,6 +495,18 @@ public class Person implements HasPointBelongsFactionGameObject {
         }
     }
 
+    /**
+     * Count down the days of moving of a person not arriving today, touching only this person
+     * @return true if the person arrives today and is left unchanged, to be advanced by {@link #advanceDay()}
+     */
+    boolean advanceMovingDaysBeforeArrival() {
+        if (this.movingDays > 1) {
+            this.movingDays--;
+            return false;
+        }
+        return this.movingDays == 1;
+    }
+
     @LuaAI.ExportToLua
     public int getAgricultureAbility() {
         return getStrength() + 2 * getPolitics() + getGlamour();
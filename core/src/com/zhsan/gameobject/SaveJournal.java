@@ -0,0 +1,110 @@
+package com.zhsan.gameobject;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Keeps a binary save up to date by appending to its journal only the rows that changed since they were last written.
+ * Rows are compared with the rows last written, so game objects need no dirty flags. A table keyed by its first field
+ * is journaled row by row, any other table as a whole.
+ */
+final class SaveJournal {
+
+    private final FileHandle root;
+    private final Map<String, List<String[]>> writtenRows;
+    private long journalLength;
+
+    /**
+     * @param root Directory holding the snapshot just written
+     * @param writtenRows Rows of the tables written to the snapshot that may change later, by file name
+     */
+    SaveJournal(FileHandle root, Map<String, List<String[]>> writtenRows) {
+        this.root = root;
+        this.writtenRows = new HashMap<>(writtenRows);
+        this.journalLength = 0;
+    }
+
+    /**
+     * @return true if the save in the directory is the one this journal keeps, unchanged by anything else since, and
+     * its journal is still small compared to the snapshot
+     */
+    boolean canAppend(FileHandle root) {
+        FileHandle snapshot = this.root.child(SaveSnapshot.SAVE_FILE);
+        FileHandle journal = this.root.child(SaveSnapshot.JOURNAL_FILE);
+        return this.root.file().getAbsoluteFile().equals(root.file().getAbsoluteFile())
+                && snapshot.exists()
+                && journal.length() == journalLength
+                && journalLength < snapshot.length() / 2;
+    }
+
+    /**
+     * Append the changes from the rows last written to the journal
+     * @param rows Current rows of the tables, by file name
+     */
+    void append(Map<String, List<String[]>> rows) throws IOException {
+        Map<String, List<String[]>> record = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String[]>> table : rows.entrySet()) {
+            String name = table.getKey();
+            List<String[]> current = table.getValue();
+            List<String[]> written = writtenRows.get(name);
+            if (written != null && sameRows(written, current)) continue;
+
+            if (written == null || !isKeyed(written) || !isKeyed(current)
+                    || !Arrays.equals(written.get(0), current.get(0))) {
+                record.put(name, current);
+                continue;
+            }
+
+            Map<String, String[]> writtenByKey = new HashMap<>();
+            written.subList(1, written.size()).forEach(r -> writtenByKey.put(r[0], r));
+
+            List<String[]> changed = new ArrayList<>();
+            for (String[] row : current.subList(1, current.size())) {
+                String[] old = writtenByKey.remove(row[0]);
+                if (old == null || !Arrays.equals(old, row)) {
+                    changed.add(row);
+                }
+            }
+            List<String[]> removed = new ArrayList<>();
+            for (String key : writtenByKey.keySet()) {
+                removed.add(new String[]{key});
+            }
+
+            if (!removed.isEmpty()) {
+                record.put(SaveSnapshot.removedRowsSection(name), removed);
+            }
+            if (!changed.isEmpty()) {
+                record.put(SaveSnapshot.changedRowsSection(name), changed);
+            }
+        }
+
+        if (!record.isEmpty()) {
+            journalLength = SaveSnapshot.appendToJournal(root, record);
+        }
+        writtenRows.putAll(rows);
+    }
+
+    private static boolean sameRows(List<String[]> a, List<String[]> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); ++i) {
+            if (!Arrays.equals(a.get(i), b.get(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the table has a header and its rows have distinct first fields
+     */
+    private static boolean isKeyed(List<String[]> rows) {
+        if (rows.isEmpty()) return false;
+
+        Set<String> keys = new HashSet<>();
+        for (String[] row : rows.subList(1, rows.size())) {
+            if (row.length == 0 || row[0] == null || !keys.add(row[0])) return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,432 @@
+package com.zhsan.gameobject;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Binary snapshot of a saved game, a single file in the save directory holding every table otherwise saved as a
+ * CSV file. A directory with a snapshot is read from the snapshot only.
+ *
+ * The file starts with the magic number and the {@link GameScenario#SAVE_VERSION} it was written with, followed by
+ * one section per table: the varint length and UTF-8 bytes of the table's file name, the int length of the payload,
+ * and the payload. A payload is a list of rows, each a varint field count and the fields. A field holding a
+ * canonical integer is written as the varint 1 followed by its zigzag varint, any other field as the varint
+ * (length << 1) followed by its UTF-8 bytes.
+ *
+ * Autosaves append the changes since the snapshot was written to a journal next to it, see {@link SaveJournal}.
+ */
+public final class SaveSnapshot {
+
+    public static final String SAVE_FILE = "Save.zhs";
+    public static final String JOURNAL_FILE = "Save.zhj";
+
+    private static final int MAGIC = 0x5a485353; // ZHSS
+    private static final int JOURNAL_MAGIC = 0x5a48534a; // ZHSJ
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_SECTION_HEADER_SIZE = 512;
+
+    private SaveSnapshot() {}
+
+    public static boolean exists(FileHandle root) {
+        return root.child(SAVE_FILE).exists();
+    }
+
+    private static Path path(FileHandle root) {
+        return root.child(SAVE_FILE).file().toPath();
+    }
+
+    /**
+     * Name of the journal section holding the rows of a table added or changed since the previous record, keyed by
+     * their first field
+     */
+    static String changedRowsSection(String table) {
+        return table + "+";
+    }
+
+    /**
+     * Name of the journal section holding the first fields of the rows of a table removed since the previous record
+     */
+    static String removedRowsSection(String table) {
+        return table + "-";
+    }
+
+    /**
+     * Create an empty snapshot in the directory, to which tables are then written as sections
+     */
+    static void create(FileHandle root) throws IOException {
+        root.child(JOURNAL_FILE).delete();
+        try (FileChannel channel = FileChannel.open(path(root), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(GameScenario.SAVE_VERSION).flip();
+            writeFully(channel, header);
+        }
+    }
+
+    /**
+     * Read a table from the snapshot, with the changes recorded in its journal applied
+     */
+    static TableReader readSection(FileHandle root, String name) throws IOException {
+        TableReader snapshot = readSnapshotSection(root, name);
+        FileHandle journal = root.child(JOURNAL_FILE);
+        return journal.exists() ? replayJournal(journal, name, snapshot) : snapshot;
+    }
+
+    private static TableReader readSnapshotSection(FileHandle root, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(root), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a save snapshot");
+            }
+            int version = header.getInt();
+            if (version > GameScenario.SAVE_VERSION) {
+                throw new IOException("Unsupported save snapshot version " + version);
+            }
+
+            long position = HEADER_SIZE;
+            long size = channel.size();
+            ByteBuffer sectionHeader = ByteBuffer.allocate(MAX_SECTION_HEADER_SIZE);
+            while (position < size) {
+                sectionHeader.clear();
+                sectionHeader.limit((int) Math.min(MAX_SECTION_HEADER_SIZE, size - position));
+                readFully(channel, sectionHeader, position);
+
+                String sectionName = readString(sectionHeader, readVarint(sectionHeader));
+                int length = sectionHeader.getInt();
+                position += sectionHeader.position();
+
+                if (sectionName.equals(name)) {
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(channel, payload, position);
+                    return new SectionReader(payload);
+                }
+                position += length;
+            }
+        }
+        throw new IOException("Table " + name + " not found in save snapshot");
+    }
+
+    static TableWriter writeSection(FileHandle root, String name) {
+        return new SectionWriter(root, name);
+    }
+
+    /**
+     * Append a record to the journal of the snapshot in the directory. The record is written as its length followed
+     * by sections in the snapshot format: a section named after a table replaces the whole table, and sections named
+     * by {@link #changedRowsSection(String)} and {@link #removedRowsSection(String)} change single rows of it.
+     * @return The length of the journal after the record is appended
+     */
+    static long appendToJournal(FileHandle root, Map<String, List<String[]>> sections) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (Map.Entry<String, List<String[]>> section : sections.entrySet()) {
+            SectionWriter writer = new SectionWriter(root, section.getKey());
+            section.getValue().forEach(writer::writeNext);
+            byte[] bytes = writer.toByteArray();
+            record.write(bytes, 0, bytes.length);
+        }
+
+        Path journal = root.child(JOURNAL_FILE).file().toPath();
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(JOURNAL_MAGIC).putInt(GameScenario.SAVE_VERSION).flip();
+                writeFully(channel, header);
+            }
+            ByteBuffer length = ByteBuffer.allocate(4);
+            length.putInt(record.size()).flip();
+            writeFully(channel, length);
+            writeFully(channel, ByteBuffer.wrap(record.toByteArray()));
+            return channel.size();
+        }
+    }
+
+    private static TableReader replayJournal(FileHandle journal, String name, TableReader snapshot) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(journal.readBytes());
+        if (data.remaining() < HEADER_SIZE || data.getInt() != JOURNAL_MAGIC) {
+            throw new IOException("Not a save journal");
+        }
+        int version = data.getInt();
+        if (version > GameScenario.SAVE_VERSION) {
+            throw new IOException("Unsupported save journal version " + version);
+        }
+
+        // the table with its header as the first row, only read from the snapshot once it changes
+        List<String[]> rows = null;
+        while (data.remaining() >= 4) {
+            int length = data.getInt();
+            if (length > data.remaining()) break; // the last record was cut short by an interrupted save
+
+            ByteBuffer record = slice(data, length);
+            while (record.hasRemaining()) {
+                String sectionName = readString(record, readVarint(record));
+                ByteBuffer payload = slice(record, record.getInt());
+                if (sectionName.equals(name)) {
+                    rows = readAll(new SectionReader(payload));
+                } else if (sectionName.equals(changedRowsSection(name))) {
+                    rows = rows == null ? readAll(snapshot) : rows;
+                    changeRows(rows, readAll(new SectionReader(payload)));
+                } else if (sectionName.equals(removedRowsSection(name))) {
+                    rows = rows == null ? readAll(snapshot) : rows;
+                    removeRows(rows, readAll(new SectionReader(payload)));
+                }
+            }
+        }
+        return rows == null ? snapshot : new RowListReader(rows);
+    }
+
+    private static ByteBuffer slice(ByteBuffer in, int length) throws IOException {
+        if (in.remaining() < length) throw new EOFException();
+        ByteBuffer result = in.duplicate();
+        result.limit(in.position() + length);
+        in.position(in.position() + length);
+        return result.slice();
+    }
+
+    private static List<String[]> readAll(TableReader reader) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = reader.readNext()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void changeRows(List<String[]> rows, List<String[]> changed) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 1; i < rows.size(); ++i) {
+            positions.put(rows.get(i)[0], i);
+        }
+        for (String[] row : changed) {
+            Integer position = positions.get(row[0]);
+            if (position != null) {
+                rows.set(position, row);
+            } else {
+                positions.put(row[0], rows.size());
+                rows.add(row);
+            }
+        }
+    }
+
+    private static void removeRows(List<String[]> rows, List<String[]> removed) {
+        Set<String> keys = new HashSet<>();
+        removed.forEach(r -> keys.add(r[0]));
+        rows.subList(1, rows.size()).removeIf(r -> keys.contains(r[0]));
+    }
+
+    private static final class RowListReader implements TableReader {
+        private final Iterator<String[]> rows;
+        private final TableRow row = new TableRow();
+
+        private RowListReader(List<String[]> rows) {
+            this.rows = rows.iterator();
+        }
+
+        @Override
+        public TableRow nextRow() {
+            if (!rows.hasNext()) return null;
+
+            row.clear();
+            for (String field : rows.next()) {
+                row.append(field);
+                row.endField();
+            }
+            return row;
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+
+    private static final class SectionReader implements TableReader {
+        private final ByteBuffer payload;
+        private final TableRow row = new TableRow();
+
+        private SectionReader(ByteBuffer payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public TableRow nextRow() throws IOException {
+            if (!payload.hasRemaining()) return null;
+
+            row.clear();
+            int size = readVarint(payload);
+            for (int i = 0; i < size; ++i) {
+                int header = readVarint(payload);
+                if ((header & 1) != 0) {
+                    row.append(zigzagDecode(readVarLong(payload)));
+                } else {
+                    appendString(header >>> 1);
+                }
+                row.endField();
+            }
+            return row;
+        }
+
+        private void appendString(int length) throws IOException {
+            if (payload.remaining() < length) throw new EOFException();
+
+            byte[] bytes = payload.array();
+            int start = payload.arrayOffset() + payload.position();
+            boolean ascii = true;
+            for (int i = start; i < start + length; ++i) {
+                if (bytes[i] < 0) {
+                    ascii = false;
+                    break;
+                }
+            }
+
+            if (ascii) {
+                for (int i = start; i < start + length; ++i) {
+                    row.append((char) bytes[i]);
+                }
+                payload.position(payload.position() + length);
+            } else {
+                row.append(readString(payload, length));
+            }
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+
+    private static final class SectionWriter implements TableWriter {
+        private final FileHandle root;
+        private final String name;
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+        private SectionWriter(FileHandle root, String name) {
+            this.root = root;
+            this.name = name;
+        }
+
+        @Override
+        public void writeNext(String[] row) {
+            writeVarint(payload, row.length);
+            for (String field : row) {
+                String s = field == null ? "" : field;
+                if (isCanonicalInteger(s)) {
+                    writeVarint(payload, 1);
+                    writeVarLong(payload, zigzagEncode(Long.parseLong(s)));
+                } else {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(payload, bytes.length << 1);
+                    payload.write(bytes, 0, bytes.length);
+                }
+            }
+        }
+
+        /**
+         * @return The name, the payload length and the payload of the section
+         */
+        private byte[] toByteArray() {
+            ByteArrayOutputStream section = new ByteArrayOutputStream(payload.size() + 16);
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            writeVarint(section, nameBytes.length);
+            section.write(nameBytes, 0, nameBytes.length);
+
+            int length = payload.size();
+            section.write(length >>> 24);
+            section.write(length >>> 16);
+            section.write(length >>> 8);
+            section.write(length);
+            section.write(payload.toByteArray(), 0, length);
+            return section.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (FileChannel channel = FileChannel.open(path(root), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, ByteBuffer.wrap(toByteArray()));
+            }
+        }
+    }
+
+    /**
+     * True if parsing and printing s as a long gives back s, so that it can be stored as a varint
+     */
+    private static boolean isCanonicalInteger(String s) {
+        int start = s.startsWith("-") ? 1 : 0;
+        int digits = s.length() - start;
+        if (digits <= 0 || digits > 18) return false;
+        if (s.charAt(start) == '0' && (digits > 1 || start > 0)) return false;
+        for (int i = start; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static long zigzagEncode(long x) {
+        return (x << 1) ^ (x >> 63);
+    }
+
+    private static long zigzagDecode(long x) {
+        return (x >>> 1) ^ -(x & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int x) {
+        writeVarLong(out, x & 0xffffffffL);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long x) {
+        while ((x & ~0x7fL) != 0) {
+            out.write((int) ((x & 0x7f) | 0x80));
+            x >>>= 7;
+        }
+        out.write((int) x);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) throw new EOFException();
+            byte b = in.get();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint in save snapshot");
+    }
+
+    private static String readString(ByteBuffer in, int length) throws IOException {
+        if (in.remaining() < length) throw new EOFException();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException();
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
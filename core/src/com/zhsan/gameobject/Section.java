@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.exception.FileReadException;
 import com.zhsan.common.exception.FileWriteException;
 import com.zhsan.gamecomponents.GlobalStrings;
@@ -11,7 +9,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.HashSet;
 
 /**
@@ -58,17 +55,17 @@ public class Section implements GameObject {
         GameObjectList<Section> result = new GameObjectList<>();
 
         FileHandle f = root.child(Section.SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
-            String[] line;
+        try (TableReader reader = TableReader.open(f)) {
+            TableRow row;
             int index = 0;
-            while ((line = reader.readNext()) != null) {
+            while ((row = reader.nextRow()) != null) {
                 index++;
                 if (index == 1) continue; // skip first line.
 
-                Section data = new Section(Integer.parseInt(line[0]), scen);
-                data.setAiTags(line[1]);
-                data.name = line[2];
-                data.belongedFaction = scen.getFactions().get(Integer.parseInt(line[3]));
+                Section data = new Section(row.getInt(0), scen);
+                data.setAiTags(row.getString(1));
+                data.name = row.getString(2);
+                data.belongedFaction = scen.getFactions().get(row.getInt(3));
 
                 result.add(data);
             }
@@ -81,20 +78,23 @@ public class Section implements GameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Section> data) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.SECTION_SAVE_HEADER).split(","));
-            for (Section d : data) {
-                writer.writeNext(new String[]{
-                        String.valueOf(d.getId()),
-                        d.getAiTags(),
-                        d.getName(),
-                        String.valueOf(d.belongedFaction.getId())
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, data);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
+    }
 
+    static void toCSV(TableWriter writer, GameObjectList<Section> data) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.SECTION_SAVE_HEADER).split(","));
+        for (Section d : data) {
+            writer.writeNext(new String[]{
+                    String.valueOf(d.getId()),
+                    d.getAiTags(),
+                    d.getName(),
+                    String.valueOf(d.belongedFaction.getId())
+            });
+        }
     }
 
     @Override
@@ -109,12 +109,12 @@ public class Section implements GameObject {
 
     @LuaAI.ExportToLua
     public GameObjectList<Architecture> getArchitectures() {
-        return scenario.getArchitectures().filter(a -> a.getBelongedSection() == this);
+        return scenario.getArchitecturesOf(this);
     }
 
     @LuaAI.ExportToLua
     public GameObjectList<Troop> getTroops() {
-        return scenario.getTroops().filter(t -> t.getBelongedSection() == this);
+        return scenario.getTroopsOf(this);
     }
 
 }
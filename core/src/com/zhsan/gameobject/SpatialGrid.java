@@ -0,0 +1,63 @@
+package com.zhsan.gameobject;
+
+import com.zhsan.common.Point;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Uniform grid of game objects that do not move, each kept in the cell of the map containing one point of it, so that
+ * the objects whose point is in a rectangle are found by looking at the cells overlapping it only.
+ */
+final class SpatialGrid<T extends GameObject> {
+
+    private static final int CELL_SIZE = 16;
+
+    private final Function<T, Point> locator;
+    private final int columns, rows;
+    private final List<List<T>> cells;
+
+    SpatialGrid(Collection<T> objects, Function<T, Point> locator, int width, int height) {
+        this.locator = locator;
+        this.columns = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cells = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; ++i) {
+            cells.add(new ArrayList<>());
+        }
+        for (T obj : objects) {
+            Point p = locator.apply(obj);
+            cells.get(getRow(p.y) * columns + getColumn(p.x)).add(obj);
+        }
+    }
+
+    private int getColumn(int x) {
+        return Math.max(0, Math.min(columns - 1, x / CELL_SIZE));
+    }
+
+    private int getRow(int y) {
+        return Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+    }
+
+    /**
+     * Run the action on each object whose point is in the rectangle, bounds included, in the order they were added
+     * within each cell.
+     */
+    void forEachIn(int xLo, int yLo, int xHi, int yHi, Consumer<T> action) {
+        if (xLo > xHi || yLo > yHi) return;
+        for (int row = getRow(yLo); row <= getRow(yHi); ++row) {
+            for (int column = getColumn(xLo); column <= getColumn(xHi); ++column) {
+                for (T obj : cells.get(row * columns + column)) {
+                    Point p = locator.apply(obj);
+                    if (xLo <= p.x && p.x <= xHi && yLo <= p.y && p.y <= yHi) {
+                        action.accept(obj);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.zhsan.gameobject;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Reads the rows of a saved table, from its CSV file, or from its section of the binary {@link SaveSnapshot} if the
+ * directory has one.
+ */
+interface TableReader extends Closeable {
+
+    /**
+     * @return The next row, or null if there are no more rows. The row is overwritten by the next call.
+     */
+    TableRow nextRow() throws IOException;
+
+    /**
+     * @return The next row, or null if there are no more rows
+     */
+    default String[] readNext() throws IOException {
+        TableRow row = nextRow();
+        return row == null ? null : row.toArray();
+    }
+
+    /**
+     * @param f The CSV file of the table
+     */
+    static TableReader open(FileHandle f) throws IOException {
+        if (SaveSnapshot.exists(f.parent())) {
+            return SaveSnapshot.readSection(f.parent(), f.name());
+        }
+
+        return new CsvTableReader(new InputStreamReader(f.read(), "UTF-8"));
+    }
+
+}
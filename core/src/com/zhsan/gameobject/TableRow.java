@@ -0,0 +1,164 @@
+package com.zhsan.gameobject;
+
+import java.util.Arrays;
+
+/**
+ * One row of a saved table, with the characters of all fields held in a single buffer. Numeric fields are parsed
+ * straight from the buffer, so reading them creates no strings. A {@link TableReader} reuses its row for every row
+ * it reads.
+ */
+final class TableRow {
+
+    private char[] chars = new char[256];
+    private int length;
+
+    private int[] fieldEnds = new int[32];
+    private int size;
+
+    void clear() {
+        length = 0;
+        size = 0;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    void append(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            append(s.charAt(i));
+        }
+    }
+
+    void append(long value) {
+        if (value < 0) {
+            append('-');
+        }
+        int start = length;
+        do {
+            append((char) ('0' + Math.abs(value % 10)));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; ++i, --j) {
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+    }
+
+    /**
+     * End the current field at the current end of the row
+     */
+    void endField() {
+        if (size == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+        }
+        fieldEnds[size++] = length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int start(int column) {
+        if (column < 0 || column >= size) {
+            throw new ArrayIndexOutOfBoundsException(column);
+        }
+        return column == 0 ? 0 : fieldEnds[column - 1];
+    }
+
+    public String getString(int column) {
+        int start = start(column);
+        int end = fieldEnds[column];
+        return start == end ? "" : new String(chars, start, end - start);
+    }
+
+    public int getInt(int column) {
+        int start = start(column);
+        int end = fieldEnds[column];
+        int value = parseInt(start, end);
+        if (value == Integer.MIN_VALUE && !isIntMinValue(start, end)) {
+            throw new NumberFormatException("For input string: \"" + getString(column) + "\"");
+        }
+        return value;
+    }
+
+    public float getFloat(int column) {
+        return Float.parseFloat(getString(column));
+    }
+
+    /**
+     * @return The whitespace separated integers of the field
+     */
+    public int[] getIntArray(int column) {
+        int start = start(column);
+        int end = fieldEnds[column];
+
+        int count = 0;
+        for (int i = start; i < end; ) {
+            while (i < end && Character.isWhitespace(chars[i])) i++;
+            if (i == end) break;
+            count++;
+            while (i < end && !Character.isWhitespace(chars[i])) i++;
+        }
+
+        int[] result = new int[count];
+        int n = 0;
+        for (int i = start; i < end; ) {
+            while (i < end && Character.isWhitespace(chars[i])) i++;
+            if (i == end) break;
+            int tokenStart = i;
+            while (i < end && !Character.isWhitespace(chars[i])) i++;
+            result[n] = parseInt(tokenStart, i);
+            if (result[n] == Integer.MIN_VALUE && !isIntMinValue(tokenStart, i)) {
+                throw new NumberFormatException("For input string: \"" + new String(chars, tokenStart, i - tokenStart) + "\"");
+            }
+            n++;
+        }
+        return result;
+    }
+
+    public String[] toArray() {
+        String[] result = new String[size];
+        for (int i = 0; i < size; ++i) {
+            result[i] = getString(i);
+        }
+        return result;
+    }
+
+    /**
+     * Parse a decimal integer the way {@link Integer#parseInt(String)} does.
+     * @return The value, or Integer.MIN_VALUE if the characters are not a valid integer
+     */
+    private int parseInt(int start, int end) {
+        if (start == end) return Integer.MIN_VALUE;
+
+        boolean negative = chars[start] == '-';
+        int i = negative || chars[start] == '+' ? start + 1 : start;
+        if (i == end) return Integer.MIN_VALUE;
+
+        long value = 0;
+        for (; i < end; ++i) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return Integer.MIN_VALUE;
+            value = value * 10 + (c - '0');
+            if (value > 1L + Integer.MAX_VALUE) return Integer.MIN_VALUE;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return Integer.MIN_VALUE;
+        return (int) value;
+    }
+
+    private boolean isIntMinValue(int start, int end) {
+        String min = String.valueOf(Integer.MIN_VALUE);
+        if (end - start != min.length()) return false;
+        for (int i = 0; i < min.length(); ++i) {
+            if (chars[start + i] != min.charAt(i)) return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.zhsan.gameobject;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.opencsv.CSVWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes the rows of a saved table, to its CSV file, or as a section of the binary {@link SaveSnapshot} if the
+ * directory has one.
+ */
+interface TableWriter extends Closeable {
+
+    void writeNext(String[] row);
+
+    /**
+     * @param f The CSV file of the table
+     */
+    static TableWriter create(FileHandle f) throws IOException {
+        if (SaveSnapshot.exists(f.parent())) {
+            return SaveSnapshot.writeSection(f.parent(), f.name());
+        }
+
+        CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"));
+        return new TableWriter() {
+            @Override
+            public void writeNext(String[] row) {
+                writer.writeNext(row);
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * @return The rows written by the writer function, kept in memory
+     */
+    static List<String[]> rowsOf(Consumer<TableWriter> writerFunction) {
+        List<String[]> rows = new ArrayList<>();
+        writerFunction.accept(new TableWriter() {
+            @Override
+            public void writeNext(String[] row) {
+                rows.add(row);
+            }
+
+            @Override
+            public void close() {
+                // no-op
+            }
+        });
+        return rows;
+    }
+
+}
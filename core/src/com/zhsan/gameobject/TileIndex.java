@@ -0,0 +1,79 @@
+package com.zhsan.gameobject;
+
+import com.zhsan.common.Point;
+
+import java.util.function.Consumer;
+
+/**
+ * Dense per-tile index of game objects occupying the map, storing a reference to the object of each tile in a
+ * row-major array of width * height, so that a lookup is a single array read. At most one object of the indexed
+ * list is kept per tile; objects removed from the list must be cleared from the index first.
+ */
+final class TileIndex<T extends GameObject> {
+
+    private final int width, height;
+    private final Object[] tiles;
+
+    TileIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tiles = new Object[width * height];
+    }
+
+    private boolean inBound(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int x, int y) {
+        if (!inBound(x, y)) return null;
+        return (T) tiles[y * width + x];
+    }
+
+    T get(Point p) {
+        return get(p.x, p.y);
+    }
+
+    /**
+     * Run the action on each object indexed at a tile in the rectangle, bounds included, row by row. An object taking
+     * several tiles is visited once for each of them.
+     */
+    @SuppressWarnings("unchecked")
+    void forEachIn(int xLo, int yLo, int xHi, int yHi, Consumer<T> action) {
+        xLo = Math.max(xLo, 0);
+        yLo = Math.max(yLo, 0);
+        xHi = Math.min(xHi, width - 1);
+        yHi = Math.min(yHi, height - 1);
+        for (int y = yLo; y <= yHi; ++y) {
+            for (int x = xLo; x <= xHi; ++x) {
+                // read once, the tile may be cleared by another thread meanwhile
+                T obj = (T) tiles[y * width + x];
+                if (obj != null) {
+                    action.accept(obj);
+                }
+            }
+        }
+    }
+
+    void put(Point p, T obj) {
+        if (p == null || !inBound(p.x, p.y)) return;
+        tiles[p.y * width + p.x] = obj;
+    }
+
+    /**
+     * Clear the tile at p, if it is occupied by obj
+     */
+    void clear(Point p, T obj) {
+        if (p == null || !inBound(p.x, p.y)) return;
+        int index = p.y * width + p.x;
+        if (tiles[index] == obj) {
+            tiles[index] = null;
+        }
+    }
+
+    void move(Point from, Point to, T obj) {
+        clear(from, obj);
+        put(to, obj);
+    }
+
+}
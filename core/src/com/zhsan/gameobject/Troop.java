@@ -1,8 +1,6 @@
 package com.zhsan.gameobject;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Pair;
 import com.zhsan.common.Point;
@@ -13,7 +11,6 @@ import com.zhsan.lua.LuaAI;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
 
 /**
@@ -161,19 +158,19 @@ public class Troop implements HasPointBelongsFactionGameObject {
         GameObjectList<Troop> result = new GameObjectList<>();
 
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVReader reader = new CSVReader(new InputStreamReader(f.read(), "UTF-8"))) {
-            String[] line;
+        try (TableReader reader = TableReader.open(f)) {
+            TableRow row;
             int index = 0;
-            while ((line = reader.readNext()) != null) {
+            while ((row = reader.nextRow()) != null) {
                 index++;
                 if (index == 1) continue; // skip first line.
 
-                Troop data = new Troop(Integer.parseInt(line[0]), scen);
-                data.setAiTags(line[1]);
-                data.location = Point.fromCSV(line[2]);
-                data.order = Order.fromCSV(scen, line[3], line[4]);
-                data.belongedSection = scen.getSections().get(Integer.parseInt(line[5]));
-                data.startArchitecture = scen.getArchitectures().get(Integer.parseInt(line[6]));
+                Troop data = new Troop(row.getInt(0), scen);
+                data.setAiTags(row.getString(1));
+                data.location = Point.fromCoordinates(row.getIntArray(2));
+                data.order = Order.fromCSV(scen, row.getString(3), row.getString(4));
+                data.belongedSection = scen.getSections().get(row.getInt(5));
+                data.startArchitecture = scen.getArchitectures().get(row.getInt(6));
 
                 result.add(data);
             }
@@ -186,25 +183,29 @@ public class Troop implements HasPointBelongsFactionGameObject {
 
     public static final void toCSV(FileHandle root, GameObjectList<Troop> types) {
         FileHandle f = root.child(SAVE_FILE);
-        try (CSVWriter writer = new CSVWriter(f.writer(false, "UTF-8"))) {
-            writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.TROOP_SAVE_HEADER).split(","));
-            for (Troop detail : types) {
-                Pair<String, String> orderStr = detail.order.toCSV();
-                writer.writeNext(new String[]{
-                        String.valueOf(detail.getId()),
-                        detail.getAiTags(),
-                        detail.location.toCSV(),
-                        orderStr.x,
-                        orderStr.y,
-                        String.valueOf(detail.belongedSection.getId()),
-                        String.valueOf(detail.startArchitecture.getId())
-                });
-            }
+        try (TableWriter writer = TableWriter.create(f)) {
+            toCSV(writer, types);
         } catch (IOException e) {
             throw new FileWriteException(f.path(), e);
         }
     }
 
+    static void toCSV(TableWriter writer, GameObjectList<Troop> types) {
+        writer.writeNext(GlobalStrings.getString(GlobalStrings.Keys.TROOP_SAVE_HEADER).split(","));
+        for (Troop detail : types) {
+            Pair<String, String> orderStr = detail.order.toCSV();
+            writer.writeNext(new String[]{
+                    String.valueOf(detail.getId()),
+                    detail.getAiTags(),
+                    detail.location.toCSV(),
+                    orderStr.x,
+                    orderStr.y,
+                    String.valueOf(detail.belongedSection.getId()),
+                    String.valueOf(detail.startArchitecture.getId())
+            });
+        }
+    }
+
     public Troop(int id, GameScenario scen) {
         this.id = id;
         this.scenario = scen;
@@ -225,7 +226,9 @@ public class Troop implements HasPointBelongsFactionGameObject {
     }
 
     public Troop setLocation(Point location) {
+        Point old = this.location;
         this.location = location;
+        scenario.troopMoved(this, old, location);
         return this;
     }
 
@@ -258,6 +261,7 @@ public class Troop implements HasPointBelongsFactionGameObject {
 
     public void setBelongedSection(Section s) {
         belongedSection = s;
+        scenario.reindex(this);
     }
 
     @LuaAI.ExportToLua
@@ -472,27 +476,48 @@ public class Troop implements HasPointBelongsFactionGameObject {
         attacked = false;
     }
 
-    public boolean stepForward() {
+    boolean hasPath() {
+        return currentPath != null;
+    }
+
+    /**
+     * The next tile on the path, if the troop has enough movability left to enter it. Other troops and architectures
+     * are not checked, and the kind is passed in rather than looked up through the shared military cache, so this
+     * only reads the troop's own state and the immutable scenario tables, and may be called for all troops in
+     * parallel.
+     * @param kind The troop's current kind, from {@link #getKind()} called on a single thread, or null if it has no path
+     * @return The tile, or null if the troop stops here for the day
+     */
+    Point planStep(MilitaryKind kind) {
         if (currentPath == null) {
-            return true;
+            return null;
         }
 
-        Point p = currentPath.poll();
-        if (p == null) return false;
+        Point p = currentPath.peek();
+        if (p == null) return null;
 
-        if (!canMoveInto(p)) {
-            return false;
+        float cost = scenario.getMilitaryTerrain(kind, scenario.getTerrainAt(p)).getAdaptability();
+        if (cost > currentMovability) {
+            return null;
         }
 
-        float cost = scenario.getMilitaryTerrain(this.getKind(), scenario.getTerrainAt(p)).getAdaptability();
+        return p;
+    }
 
-        if (cost <= currentMovability) {
-            currentMovability -= cost;
-            location = p;
-        } else {
+    /**
+     * Move into the tile returned by {@link #planStep(MilitaryKind)}, if no troop or hostile architecture occupies it now
+     * @return true if moved
+     */
+    boolean stepInto(Point p) {
+        currentPath.poll();
+
+        if (!canMoveInto(p)) {
             return false;
         }
 
+        currentMovability -= scenario.getMilitaryTerrain(this.getKind(), scenario.getTerrainAt(p)).getAdaptability();
+        setLocation(p);
+
         return true;
     }
 
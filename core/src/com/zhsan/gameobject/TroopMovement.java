@@ -0,0 +1,119 @@
+package com.zhsan.gameobject;
+
+import com.zhsan.common.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Resolves one step of troop movement, in which every moving troop advances by at most one tile.
+ *
+ * Next tiles are planned for all troops in parallel, from kinds looked up beforehand on the calling thread. They are then taken in id order, so a troop with a smaller id
+ * wins a tile contested with another troop. Animations of the whole step are started as one batch, and the step waits
+ * for all of them before the troops enter architectures or attack, again in id order.
+ */
+final class TroopMovement {
+
+    private enum StepKind {
+        MOVE, ATTACK
+    }
+
+    private static final class Step {
+        private final Troop troop;
+        private final StepKind kind;
+        private final Point from, to;
+        private final HasPointLocationGameObject target;
+
+        private Step(Troop troop, StepKind kind, Point from, Point to, HasPointLocationGameObject target) {
+            this.troop = troop;
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+            this.target = target;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final GameScenario.OnTroopDone onTroopDone;
+
+    TroopMovement(ForkJoinPool pool, GameScenario.OnTroopDone onTroopDone) {
+        this.pool = pool;
+        this.onTroopDone = onTroopDone;
+    }
+
+    /**
+     * Move the troops by one step
+     * @param movingTroops Troops still moving in this day, in id order
+     * @return Troops still moving after the step, in id order
+     */
+    List<Troop> step(List<Troop> movingTroops) {
+        // getKind fills the shared, unsynchronized military cache on a miss, so resolve kinds here first
+        List<MilitaryKind> kinds = movingTroops.stream()
+                .map(t -> t.hasPath() ? t.getKind() : null)
+                .collect(Collectors.toList());
+        List<Point> planned = pool.submit(() -> IntStream.range(0, movingTroops.size()).parallel()
+                .mapToObj(i -> movingTroops.get(i).planStep(kinds.get(i)))
+                .collect(Collectors.toList())).join();
+
+        List<Step> steps = new ArrayList<>();
+        for (int i = 0; i < movingTroops.size(); ++i) {
+            Troop t = movingTroops.get(i);
+            if (t.isDestroyed() || !t.hasPath()) continue;
+
+            Point oldLoc = t.getPosition();
+            HasPointLocationGameObject target = t.canAttackTarget();
+            Point next = planned.get(i);
+            if (next != null && t.stepInto(next)) {
+                steps.add(new Step(t, StepKind.MOVE, oldLoc, next, target));
+            } else if (target != null) {
+                steps.add(new Step(t, StepKind.ATTACK, oldLoc, target.getPosition(), target));
+            }
+        }
+
+        CountDownLatch animationsDone = new CountDownLatch(steps.size());
+        for (Step s : steps) {
+            if (s.kind == StepKind.MOVE) {
+                onTroopDone.onStartTroopStep(s.troop, s.from, s.to, animationsDone::countDown);
+            } else {
+                onTroopDone.onStartAttackStep(s.troop, s.target, animationsDone::countDown);
+            }
+        }
+        awaitUninterruptibly(animationsDone);
+
+        List<Troop> stillMoving = new ArrayList<>();
+        for (Step s : steps) {
+            Troop t = s.troop;
+            if (t.isDestroyed()) continue;
+
+            if (s.kind == StepKind.MOVE && t.tryEnter(s.to)) continue;
+            if (s.target != null) {
+                List<DamagePack> damagePacks = t.attack();
+                onTroopDone.onAttackDone(t, s.target, damagePacks);
+            }
+            if (s.kind == StepKind.MOVE) {
+                stillMoving.add(t);
+            }
+        }
+        return stillMoving;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
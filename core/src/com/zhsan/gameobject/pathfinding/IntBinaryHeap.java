@@ -0,0 +1,134 @@
+package com.zhsan.gameobject.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int nodes in the range [0, capacity), each with a float value.
+ * Heap order and tie-breaking follow gdx's {@link com.badlogic.gdx.utils.BinaryHeap}, so searches on it
+ * expand nodes in the same order as gdx-ai's IndexedAStarPathFinder.
+ */
+final class IntBinaryHeap {
+
+    private final int[] nodes;
+    private final int[] positions;
+    private final float[] values;
+    private int size;
+
+    IntBinaryHeap(int capacity) {
+        nodes = new int[capacity];
+        positions = new int[capacity];
+        values = new float[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return positions[node] >= 0;
+    }
+
+    float getValue(int node) {
+        return values[node];
+    }
+
+    void add(int node, float value) {
+        values[node] = value;
+        nodes[size] = node;
+        positions[node] = size;
+        up(size++);
+    }
+
+    int pop() {
+        return removeAt(0);
+    }
+
+    void remove(int node) {
+        removeAt(positions[node]);
+    }
+
+    void setValue(int node, float value) {
+        float oldValue = values[node];
+        values[node] = value;
+        if (value < oldValue) {
+            up(positions[node]);
+        } else {
+            down(positions[node]);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; ++i) {
+            positions[nodes[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private int removeAt(int index) {
+        int removed = nodes[index];
+        nodes[index] = nodes[--size];
+        positions[nodes[index]] = index;
+        positions[removed] = -1;
+        if (size > 0 && index < size) down(index);
+        return removed;
+    }
+
+    private void up(int index) {
+        int node = nodes[index];
+        float value = values[node];
+        while (index > 0) {
+            int parentIndex = (index - 1) >> 1;
+            int parent = nodes[parentIndex];
+            if (value < values[parent]) {
+                nodes[index] = parent;
+                positions[parent] = index;
+                index = parentIndex;
+            } else {
+                break;
+            }
+        }
+        nodes[index] = node;
+        positions[node] = index;
+    }
+
+    private void down(int index) {
+        int node = nodes[index];
+        float value = values[node];
+
+        while (true) {
+            int leftIndex = 1 + (index << 1);
+            if (leftIndex >= size) break;
+            int rightIndex = leftIndex + 1;
+
+            int leftNode = nodes[leftIndex];
+            float leftValue = values[leftNode];
+
+            int rightNode;
+            float rightValue;
+            if (rightIndex >= size) {
+                rightNode = -1;
+                rightValue = Float.MAX_VALUE;
+            } else {
+                rightNode = nodes[rightIndex];
+                rightValue = values[rightNode];
+            }
+
+            if (leftValue < rightValue) {
+                if (leftValue == value || leftValue > value) break;
+                nodes[index] = leftNode;
+                positions[leftNode] = index;
+                index = leftIndex;
+            } else {
+                if (rightValue == value || rightValue > value) break;
+                nodes[index] = rightNode;
+                positions[rightNode] = index;
+                index = rightIndex;
+            }
+        }
+
+        nodes[index] = node;
+        positions[node] = index;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.zhsan.gameobject.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch buffers of a path search. A tile's entries are only valid if its search id
+ * equals the current one, so starting a new search is O(1).
+ */
+final class SearchState {
+
+    static final byte UNVISITED = 0;
+    static final byte OPEN = 1;
+    static final byte CLOSED = 2;
+
+    private static final ThreadLocal<SearchState> states = new ThreadLocal<>();
+
+    final float[] costSoFar;
+    final int[] parents;
+    final byte[] categories;
+    final IntBinaryHeap openList;
+
+    private final int[] searchIds;
+    private int searchId = 0;
+
+    private SearchState(int size) {
+        costSoFar = new float[size];
+        parents = new int[size];
+        categories = new byte[size];
+        searchIds = new int[size];
+        openList = new IntBinaryHeap(size);
+    }
+
+    /**
+     * Get the scratch buffers of the current thread, ready for a new search on a graph of the given size
+     */
+    static SearchState begin(int size) {
+        SearchState state = states.get();
+        if (state == null || state.searchIds.length != size) {
+            state = new SearchState(size);
+            states.set(state);
+        }
+        state.searchId++;
+        if (state.searchId < 0) {
+            state.searchId = 1;
+            Arrays.fill(state.searchIds, 0);
+        }
+        state.openList.clear();
+        return state;
+    }
+
+    void visit(int node) {
+        if (searchIds[node] != searchId) {
+            searchIds[node] = searchId;
+            categories[node] = UNVISITED;
+            parents[node] = -1;
+            costSoFar[node] = 0;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.zhsan.gameobject.pathfinding;
+
+import com.zhsan.gameobject.GameMap;
+import com.zhsan.gameobject.GameScenario;
+import com.zhsan.gameobject.MilitaryKind;
+
+/**
+ * Immutable cost of entering each tile of the map for one military kind, in row-major order.
+ * Only depends on terrain, so one instance is shared by every troop of that kind; dynamic obstacles
+ * like troops and hostile architectures are checked by {@link ZhPathFinder} at query time.
+ */
+public final class TerrainCostGraph {
+
+    private final int width, height;
+    private final float[] costs;
+
+    private TerrainCostGraph(int width, int height, float[] costs) {
+        this.width = width;
+        this.height = height;
+        this.costs = costs;
+    }
+
+    /**
+     * Graph for a military kind. Tiles impassable to the kind cost Float.MAX_VALUE.
+     */
+    public static TerrainCostGraph forKind(GameScenario scen, GameMap map, MilitaryKind kind) {
+        int width = map.getWidth(), height = map.getHeight();
+        float[] costs = new float[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                costs[y * width + x] = scen.getMilitaryTerrain(kind, map.getTerrainAt(x, y)).getAdaptability();
+            }
+        }
+        return new TerrainCostGraph(width, height, costs);
+    }
+
+    /**
+     * Graph where every tile passable by any military kind costs 1, and the others cost Float.MAX_VALUE.
+     */
+    public static TerrainCostGraph forAnyKind(GameScenario scen, GameMap map) {
+        int width = map.getWidth(), height = map.getHeight();
+        float[] costs = new float[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                costs[y * width + x] = map.getTerrainAt(x, y).isPassableByAnyMilitaryKind(scen) ? 1 : Float.MAX_VALUE;
+            }
+        }
+        return new TerrainCostGraph(width, height, costs);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getCost(int index) {
+        return costs[index];
+    }
+
+}
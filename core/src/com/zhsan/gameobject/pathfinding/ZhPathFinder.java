@@ -1,19 +1,15 @@
 package com.zhsan.gameobject.pathfinding;
 
-import com.badlogic.gdx.ai.pfa.Connection;
-import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
-import com.badlogic.gdx.ai.pfa.GraphPath;
-import com.badlogic.gdx.ai.pfa.Heuristic;
-import com.badlogic.gdx.ai.pfa.indexed.DefaultIndexedGraph;
-import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
-import com.badlogic.gdx.ai.pfa.indexed.IndexedNode;
-import com.badlogic.gdx.utils.Array;
 import com.zhsan.common.Point;
 import com.zhsan.gameobject.*;
 
 import java.util.*;
 
 /**
+ * A* path finder on the tile grid for one troop, or for any military kind if the troop is null.
+ * Terrain costs come from the scenario's shared {@link TerrainCostGraph} of the troop's military kind, with troops
+ * and hostile architectures checked at query time. Search state lives in per-thread {@link SearchState} buffers,
+ * so path finders are cheap to create and a search produces no garbage besides its result.
  * Created by Peter on 9/8/2015.
  */
 public class ZhPathFinder {
@@ -21,212 +17,159 @@ public class ZhPathFinder {
     // allow routing into virtual unreachable positions.
     private static final float VERY_LARGE_COST = 9e9f;
 
-    private class Conn implements Connection<Node> {
+    private final GameScenario scen;
+    private final Troop troop;
 
-        private final Node from, to;
-        private final Troop troop;
+    private final int width, height;
 
-        public Conn(Node from, Node to, Troop kind) {
-            this.from = from;
-            this.to = to;
-            this.troop = kind;
-        }
-
-        @Override
-        public float getCost() {
-            Point toPoint = new Point(to.x, to.y);
-            if (troop == null) {
-                return map.getTerrainAt(toPoint).isPassableByAnyMilitaryKind(scen) ? 1 : Float.MAX_VALUE;
-            }
-            if (!troop.canMoveInto(toPoint)) {
-                return VERY_LARGE_COST;
-            }
-            return scen.getMilitaryTerrain(troop.getKind(), map.getTerrainAt(toPoint)).getAdaptability();
-        }
-
-        @Override
-        public Node getFromNode() {
-            return from;
-        }
-
-        @Override
-        public Node getToNode() {
-            return to;
-        }
-
-        @Override
-        public String toString() {
-            return "Conn{" +
-                    "from=" + from +
-                    ", to=" + to +
-                    ", troop=" + troop +
-                    '}';
-        }
+    public ZhPathFinder(GameScenario scen, GameMap map, Troop troop) {
+        this.scen = scen;
+        this.troop = troop;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
     }
 
-    private class Node implements IndexedNode<Node> {
-
-        private final int x, y;
-        private final Troop kind;
-
-        private float cost;
+    private TerrainCostGraph getCurrentGraph() {
+        return scen.getTerrainCostGraph(troop == null ? null : troop.getKind());
+    }
 
-        public Node(int x, int y, Troop kind) {
-            this.x = x;
-            this.y = y;
-            this.kind = kind;
+    private boolean isBlocked(int x, int y) {
+        Architecture destArch = scen.getArchitectureAt(x, y);
+        if (destArch != null && destArch.getBelongedFaction() != troop.getBelongedFaction() && destArch.getEndurance() > 0) {
+            return true;
         }
+        return scen.getTroopAt(x, y) != null;
+    }
 
-        public float getCost() {
+    /**
+     * Cost of moving into the tile, Float.MAX_VALUE if there is no connection to it at all.
+     */
+    private float getCost(TerrainCostGraph graph, int to) {
+        float cost = graph.getCost(to);
+        if (troop == null) {
             return cost;
         }
-
-        public Node setCost(float cost) {
-            this.cost = cost;
-            return this;
-        }
-
-        @Override
-        public int getIndex() {
-            return pointToIndex(x, y);
-        }
-
-        @Override
-        public Array<Connection<Node>> getConnections() {
-            Array<Connection<Node>> result = new Array<>(4);
-            if (x > 0) {
-                Conn conn = new Conn(nodes.get(pointToIndex(x, y)), nodes.get(pointToIndex(x - 1, y)), kind);
-                if (conn.getCost() != Float.MAX_VALUE) {
-                    result.add(conn);
-                }
-            }
-            if (y > 0) {
-                Conn conn = new Conn(nodes.get(pointToIndex(x, y)), nodes.get(pointToIndex(x, y - 1)), kind);
-                if (conn.getCost() != Float.MAX_VALUE) {
-                    result.add(conn);
-                }
-            }
-            if (x < map.getWidth() - 1) {
-                Conn conn = new Conn(nodes.get(pointToIndex(x, y)), nodes.get(pointToIndex(x + 1, y)), kind);
-                if (conn.getCost() != Float.MAX_VALUE) {
-                    result.add(conn);
-                }
-            }
-            if (y < map.getHeight() - 1) {
-                Conn conn = new Conn(nodes.get(pointToIndex(x, y)), nodes.get(pointToIndex(x, y + 1)), kind);
-                if (conn.getCost() != Float.MAX_VALUE) {
-                    result.add(conn);
-                }
-            }
-            return result;
-        }
-
-        @Override
-        public String toString() {
-            return "Node{" +
-                    "x=" + x +
-                    ", y=" + y +
-                    ", troop=" + kind +
-                    ", cost=" + cost +
-                    '}';
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            Node node = (Node) o;
-
-            if (x != node.x) return false;
-            return y == node.y;
-
-        }
-
-        @Override
-        public int hashCode() {
-            int result = x;
-            result = 31 * result + y;
-            return result;
+        if (cost == Float.MAX_VALUE || isBlocked(to % width, to / width)) {
+            return VERY_LARGE_COST;
         }
+        return cost;
     }
 
-    private class H implements Heuristic<Node> {
+    private float estimate(int from, int to) {
+        return Math.abs(from / width - to / width) + Math.abs(from % width - to % width);
+    }
 
-        @Override
-        public float estimate(Node from, Node to) {
-            return Math.abs(from.y - to.y) + Math.abs(from.x - to.x);
+    // neighbours are visited in the order left, up, right, down
+    private int neighbour(int node, int direction) {
+        int x = node % width, y = node / width;
+        switch (direction) {
+            case 0: return x > 0 ? node - 1 : -1;
+            case 1: return y > 0 ? node - width : -1;
+            case 2: return x < width - 1 ? node + 1 : -1;
+            case 3: return y < height - 1 ? node + width : -1;
+            default: return -1;
         }
     }
 
-    private GameMap map;
-    private GameScenario scen;
-
-    private Array<Node> nodes = new Array<>();
-    private IndexedAStarPathFinder<Node> pathFinder;
+    public List<Point> findPath(Point from, Point to) {
+        int start = from.y * width + from.x;
+        int end = to.y * width + to.x;
+        TerrainCostGraph graph = getCurrentGraph();
 
-    private int pointToIndex(int x, int y) {
-        return y * map.getWidth() + x;
-    }
+        SearchState state = SearchState.begin(width * height);
+        float[] costSoFar = state.costSoFar;
+        int[] parents = state.parents;
+        byte[] categories = state.categories;
+        IntBinaryHeap openList = state.openList;
 
-    public ZhPathFinder(GameScenario scen, GameMap map, Troop kind) {
-        this.scen = scen;
-        this.map = map;
+        state.visit(start);
+        openList.add(start, estimate(start, end));
+        categories[start] = SearchState.OPEN;
 
-        for (int y = 0; y < map.getHeight(); ++y) {
-            for (int x = 0; x < map.getWidth(); ++x) {
-                nodes.add(new Node(x, y, kind));
+        int current;
+        do {
+            current = openList.pop();
+            categories[current] = SearchState.CLOSED;
+            if (current == end) break;
+
+            for (int d = 0; d < 4; ++d) {
+                int next = neighbour(current, d);
+                if (next < 0) continue;
+                float cost = getCost(graph, next);
+                if (cost == Float.MAX_VALUE) continue;
+
+                float nextCost = costSoFar[current] + cost;
+                float heuristic;
+                state.visit(next);
+                if (categories[next] == SearchState.CLOSED) {
+                    if (costSoFar[next] <= nextCost) continue;
+                    heuristic = openList.getValue(next) - costSoFar[next];
+                } else if (categories[next] == SearchState.OPEN) {
+                    if (costSoFar[next] <= nextCost) continue;
+                    openList.remove(next);
+                    heuristic = openList.getValue(next) - costSoFar[next];
+                } else {
+                    heuristic = estimate(next, end);
+                }
+                costSoFar[next] = nextCost;
+                parents[next] = current;
+                openList.add(next, nextCost + heuristic);
+                categories[next] = SearchState.OPEN;
             }
-        }
-        DefaultIndexedGraph<Node> graph = new DefaultIndexedGraph<>(nodes);
-        pathFinder = new IndexedAStarPathFinder<>(graph);
-    }
+        } while (openList.size() > 0);
 
-    public List<Point> findPath(Point from, Point to) {
-        GraphPath<Node> out = new DefaultGraphPath<>();
-        boolean found = pathFinder.searchNodePath(nodes.get(pointToIndex(from.x, from.y)), nodes.get(pointToIndex(to.x, to.y)), new H(), out);
-        if (!found) {
+        if (current != end) {
             return null;
         }
 
         List<Point> result = new ArrayList<>();
-        for (Node n : out) {
-            result.add(new Point(n.x, n.y));
+        for (int n = end; n >= 0; n = parents[n]) {
+            result.add(new Point(n % width, n / width));
         }
+        Collections.reverse(result);
         return result;
     }
 
     public List<Point> getPointsWithinCost(Point from, int maxCost) {
         List<Point> result = new ArrayList<>();
 
-        Node start = nodes.get(pointToIndex(from.x, from.y));
+        int start = from.y * width + from.x;
+        TerrainCostGraph graph = getCurrentGraph();
 
         // Uniform cost search getting all nodes within cost
-        PriorityQueue<Node> frontier = new PriorityQueue<>((x, y) -> Float.compare(x.cost, y.cost));
-        frontier.add(start);
+        SearchState state = SearchState.begin(width * height);
+        float[] costSoFar = state.costSoFar;
+        byte[] categories = state.categories;
+        IntBinaryHeap openList = state.openList;
 
-        Set<Node> explored = new HashSet<>();
+        state.visit(start);
+        openList.add(start, 0);
+        categories[start] = SearchState.OPEN;
 
         do {
-            Node n = frontier.poll();
-            explored.add(n);
-            result.add(new Point(n.x, n.y));
-            for (Connection<Node> c : n.getConnections()) {
-                Node target = c.getToNode() == n ? c.getFromNode() : c.getToNode();
-                if (!explored.contains(target)) {
-                    if (!frontier.contains(target)) {
-                        if (n.getCost() + c.getCost() <= maxCost) {
-                            target.setCost(n.getCost() + c.getCost());
-                            frontier.add(target);
-                        }
-                    } else if (target.getCost() > n.getCost() + c.getCost()) {
-                        target.setCost(n.getCost() + c.getCost());
+            int n = openList.pop();
+            categories[n] = SearchState.CLOSED;
+            result.add(new Point(n % width, n / width));
+            for (int d = 0; d < 4; ++d) {
+                int target = neighbour(n, d);
+                if (target < 0) continue;
+                float cost = getCost(graph, target);
+                if (cost == Float.MAX_VALUE) continue;
+
+                float newCost = costSoFar[n] + cost;
+                state.visit(target);
+                if (categories[target] == SearchState.UNVISITED) {
+                    if (newCost <= maxCost) {
+                        costSoFar[target] = newCost;
+                        openList.add(target, newCost);
+                        categories[target] = SearchState.OPEN;
                     }
+                } else if (categories[target] == SearchState.OPEN && costSoFar[target] > newCost) {
+                    costSoFar[target] = newCost;
+                    openList.setValue(target, newCost);
                 }
             }
-        } while (frontier.size() > 0);
-
-        explored.forEach(n -> n.setCost(0));
+        } while (openList.size() > 0);
 
         return result;
     }
@@ -0,0 +1,65 @@
+package com.zhsan.lua;
+
+/**
+ * Wall time and Lua instructions spent by the AI of one faction, for its last run and in total.
+ * Instructions are counted in steps of {@link LuaAI#HOOK_INTERVAL}. Runs skipped because the previous one had not
+ * returned, and runs no longer waited for after overrunning their budget, are counted too.
+ */
+public final class AiMetrics {
+
+    private long lastNanos, totalNanos;
+    private long lastInstructions, totalInstructions;
+    private int runs;
+    private int skips, overruns;
+
+    synchronized void record(long nanos, long instructions) {
+        lastNanos = nanos;
+        totalNanos += nanos;
+        lastInstructions = instructions;
+        totalInstructions += instructions;
+        runs++;
+    }
+
+    synchronized void recordSkip() {
+        skips++;
+    }
+
+    synchronized void recordOverrun() {
+        overruns++;
+    }
+
+    public synchronized long getLastNanos() {
+        return lastNanos;
+    }
+
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public synchronized long getLastInstructions() {
+        return lastInstructions;
+    }
+
+    public synchronized long getTotalInstructions() {
+        return totalInstructions;
+    }
+
+    public synchronized int getRuns() {
+        return runs;
+    }
+
+    public synchronized int getSkips() {
+        return skips;
+    }
+
+    public synchronized int getOverruns() {
+        return overruns;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d runs, last %.1fms %d instructions, total %.1fms %d instructions, %d skipped, %d overran",
+                runs, lastNanos / 1e6, lastInstructions, totalNanos / 1e6, totalInstructions, skips, overruns);
+    }
+
+}
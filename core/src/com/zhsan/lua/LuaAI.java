@@ -1,5 +1,6 @@
 package com.zhsan.lua;
 
+import com.zhsan.common.GlobalVariables;
 import com.zhsan.common.Paths;
 import com.zhsan.common.Point;
 import com.zhsan.gameobject.Faction;
@@ -8,18 +9,20 @@ import com.zhsan.gameobject.GameObjectList;
 import com.zhsan.gameobject.GameScenario;
 import org.luaj.vm2.*;
 import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.TwoArgFunction;
 import org.luaj.vm2.lib.VarArgFunction;
 import org.luaj.vm2.lib.ZeroArgFunction;
 import org.luaj.vm2.lib.jse.JsePlatform;
+import org.luaj.vm2.luajc.LuaJC;
 
 import java.io.*;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -35,9 +38,29 @@ public final class LuaAI {
     public static final String LOGS = PATH + "logs" + File.separator;
 
     public static final String FACTION_AI = "ZHSanFactionAI.lua";
+    public static final String FACTION_AI_FUNCTION = "factionAI";
+
+    /**
+     * Number of Lua instructions between checks of a faction's AI budget
+     */
+    public static final int HOOK_INTERVAL = 1000;
+
+    /**
+     * Time an AI is waited for beyond its deadline, for the hook to stop it, before it is given up on
+     */
+    private static final long OVERRUN_GRACE_MILLIS = 1000;
+
+    private static final ExecutorService AI_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "AI worker");
+                t.setDaemon(true);
+                return t;
+            });
 
-    private static Map<Faction, LuaValue> factionAIs = new HashMap<>();
-    private static Map<Faction, PrintWriter> loggers = new HashMap<>();
+    private static Map<Faction, LuaValue> factionAIs = new ConcurrentHashMap<>();
+    private static Map<Faction, PrintWriter> loggers = new ConcurrentHashMap<>();
+    private static Map<Faction, AiBudget> budgets = new ConcurrentHashMap<>();
+    private static Map<Faction, AiMetrics> metrics = new ConcurrentHashMap<>();
 
     private LuaAI(){}
 
@@ -45,6 +68,75 @@ public final class LuaAI {
         loggers.forEach((f, w) -> w.close());
     }
 
+    private static boolean isLuaJCAvailable() {
+        try {
+            Class.forName("org.apache.bcel.generic.ClassGen");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    public static AiMetrics getMetrics(Faction f) {
+        return metrics.computeIfAbsent(f, x -> new AiMetrics());
+    }
+
+    /**
+     * Run the AI of the factions on the AI worker threads, the factions whose AI took longest last time first, and
+     * wait for all of them. Each faction's AI stops itself when it runs out of its budget. An AI the budget cannot stop,
+     * e.g. one compiled by LuaJC, which never calls the debug hook, is given up on once it overruns
+     * {@link GlobalVariables#aiTimeout}, and skipped until it returns.
+     */
+    public static void runFactionAis(GameScenario scen, Collection<Faction> factions) {
+        List<Faction> ordered = new ArrayList<>(factions);
+        ordered.sort(Comparator.comparingLong((Faction f) -> getMetrics(f).getLastNanos()).reversed()
+                .thenComparingInt(Faction::getId));
+
+        Map<Faction, Future<?>> results = new LinkedHashMap<>();
+        for (Faction f : ordered) {
+            AiBudget budget = budgets.computeIfAbsent(f, x -> new AiBudget());
+            if (budget.running) {
+                getMetrics(f).recordSkip();
+                log(f, "AI: still running from an earlier day, skipped");
+                continue;
+            }
+            results.put(f, AI_POOL.submit(() -> runFactionAi(scen, f)));
+        }
+        for (Map.Entry<Faction, Future<?>> result : results.entrySet()) {
+            AiBudget budget = budgets.get(result.getKey());
+            while (true) {
+                try {
+                    result.getValue().get(OVERRUN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (budget.isOverrun()) {
+                        // interrupts the worker, which an interpreted AI notices at its next hook call
+                        result.getValue().cancel(true);
+                        getMetrics(result.getKey()).recordOverrun();
+                        log(result.getKey(), "AI: overran its budget of " + GlobalVariables.aiTimeout +
+                                " seconds, no longer waited for");
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a line to the AI log of the faction, if its AI has ever run. The AI itself may be writing to it meanwhile.
+     */
+    private static void log(Faction f, String message) {
+        PrintWriter logger = loggers.get(f);
+        if (logger == null) return;
+        logger.println(message);
+        logger.flush();
+    }
+
     public static void runFactionAi(GameScenario scen, Faction f) {
         if (loggers.get(f) == null) {
             try {
@@ -55,9 +147,37 @@ public final class LuaAI {
         }
 
         PrintWriter logger = loggers.get(f);
+        AiBudget budget = budgets.computeIfAbsent(f, x -> new AiBudget());
+
+        long start = System.nanoTime();
+        budget.start();
+        try {
+            runFactionAi(scen, f, logger, budget);
+        } finally {
+            budget.running = false;
+            AiMetrics m = getMetrics(f);
+            m.record(System.nanoTime() - start, budget.instructions);
+            logger.println("AI: " + m);
+            logger.flush();
+        }
+    }
 
+    private static void runFactionAi(GameScenario scen, Faction f, PrintWriter logger, AiBudget budget) {
         if (factionAIs.get(f) == null) {
-            Globals globals = JsePlatform.standardGlobals();
+            Globals globals = JsePlatform.debugGlobals();
+            globals.get("debug").get("sethook").call(budget, LuaValue.EMPTYSTRING, LuaValue.valueOf(HOOK_INTERVAL));
+            // so that the scripts cannot remove the hook
+            globals.set("debug", LuaValue.NIL);
+            if (GlobalVariables.compileLuaAi) {
+                if (GlobalVariables.aiInstructionBudget > 0) {
+                    logger.println("Compiled scripts never call the hook counting instructions, " +
+                            "interpreting the AI scripts to keep the instruction budget");
+                } else if (isLuaJCAvailable()) {
+                    LuaJC.install(globals);
+                } else {
+                    logger.println("LuaJC needs BCEL on the classpath, interpreting the AI scripts instead");
+                }
+            }
 
             globals.set("PATH", PATH);
             globals.set("dump", new OneArgFunction() {
@@ -72,35 +192,42 @@ public final class LuaAI {
                         LuaTable table = arg.checktable();
                         for (int i = 0; i < table.keyCount(); ++i) {
                             LuaValue key = table.keys()[i];
-                            LuaValue value = table.get(key);
-                            if (value.istable()) {
-                                logger.println(ns(indent, " ") + key + " = ");
-                                dump(indent + 4, value);
-                            } else if (value.isfunction()) {
-                                if (key.tojstring().startsWith("get")) {
-                                    LuaValue result;
-                                    try {
-                                        result = value.call();
-                                        if (result.istable()) {
-                                            logger.println(ns(indent, " ") + key + " = ");
-                                            dump(indent + 4, result);
-                                        } else {
-                                            logger.println(ns(indent, " ") + key + " = " + result);
-                                        }
-                                    } catch (IllegalArgumentException e) {
-                                        logger.println(ns(indent, " ") + key + " = " + value);
-                                    }
+                            dump(indent, key, table.get(key));
+                        }
+                    } else if (arg instanceof LuaObject) {
+                        for (String name : ((LuaObject) arg).binding.names) {
+                            dump(indent, LuaValue.valueOf(name), arg.get(name));
+                        }
+                    } else {
+                        logger.println(arg);
+                    }
+                    logger.flush();
+                }
+
+                private void dump(int indent, LuaValue key, LuaValue value) {
+                    if (value.istable() || value instanceof LuaObject) {
+                        logger.println(ns(indent, " ") + key + " = ");
+                        dump(indent + 4, value);
+                    } else if (value.isfunction()) {
+                        if (key.tojstring().startsWith("get")) {
+                            LuaValue result;
+                            try {
+                                result = value.call();
+                                if (result.istable() || result instanceof LuaObject) {
+                                    logger.println(ns(indent, " ") + key + " = ");
+                                    dump(indent + 4, result);
                                 } else {
-                                    logger.println(ns(indent, " ") + key + " = " + value);
+                                    logger.println(ns(indent, " ") + key + " = " + result);
                                 }
-                            } else {
+                            } catch (IllegalArgumentException e) {
                                 logger.println(ns(indent, " ") + key + " = " + value);
                             }
+                        } else {
+                            logger.println(ns(indent, " ") + key + " = " + value);
                         }
                     } else {
-                        logger.println(arg);
+                        logger.println(ns(indent, " ") + key + " = " + value);
                     }
-                    logger.flush();
                 }
 
                 @Override
@@ -118,17 +245,26 @@ public final class LuaAI {
                 }
             });
 
-            LuaTable factionTable = LuaValue.tableOf();
-            LuaAI.processAnnotations(factionTable, Faction.class, f);
-            globals.set("faction", factionTable);
-
-            LuaTable scenarioTable = LuaValue.tableOf();
-            LuaAI.processAnnotations(scenarioTable, GameScenario.class, scen);
-            globals.set("scenario", scenarioTable);
+            globals.set("faction", new LuaObject(f));
+            globals.set("scenario", new LuaObject(scen));
 
-            LuaValue chunk = globals.loadfile(PATH + FACTION_AI);
-
-            factionAIs.put(f, chunk);
+            try {
+                // defines the entry function, loading the other scripts once
+                LuaValue chunk = globals.loadfile(PATH + FACTION_AI);
+                chunk.call();
+
+                LuaValue entry = globals.get(FACTION_AI_FUNCTION);
+                if (entry.isfunction()) {
+                    factionAIs.put(f, entry);
+                } else {
+                    // a script without the entry function runs the whole AI from its top level, as it has just done
+                    factionAIs.put(f, chunk);
+                    return;
+                }
+            } catch (LuaError e) {
+                e.printStackTrace(logger);
+                return;
+            }
         }
 
         try {
@@ -138,6 +274,43 @@ public final class LuaAI {
         }
     }
 
+    /**
+     * Debug hook counting the instructions run by a faction's AI, stopping it once it runs longer than
+     * {@link GlobalVariables#aiTimeout} or, if set, more instructions than {@link GlobalVariables#aiInstructionBudget}
+     */
+    private static final class AiBudget extends TwoArgFunction {
+        private volatile long deadline;
+        private volatile long instructions;
+        private volatile boolean running;
+
+        private void start() {
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(GlobalVariables.aiTimeout);
+            instructions = 0;
+            running = true;
+        }
+
+        /**
+         * @return true if the AI is still running a while after its deadline, so the hook did not stop it
+         */
+        private boolean isOverrun() {
+            return running && System.nanoTime() > deadline + TimeUnit.MILLISECONDS.toNanos(OVERRUN_GRACE_MILLIS);
+        }
+
+        @Override
+        public LuaValue call(LuaValue event, LuaValue line) {
+            instructions += HOOK_INTERVAL;
+            if (GlobalVariables.aiInstructionBudget > 0 && instructions > GlobalVariables.aiInstructionBudget) {
+                throw new LuaError("AI stopped after running out of its budget of " +
+                        GlobalVariables.aiInstructionBudget + " instructions");
+            }
+            if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+                throw new LuaError("AI stopped after running out of its budget of " +
+                        GlobalVariables.aiTimeout + " seconds");
+            }
+            return NIL;
+        }
+    }
+
     static class LuaTableCollector implements Collector<LuaTable, LuaTable, LuaTable> {
 
         @Override
@@ -199,24 +372,13 @@ public final class LuaAI {
         } else if (obj == null) {
             return LuaValue.NIL;
         } else if (obj instanceof GameObject) {
-            LuaTable child = LuaValue.tableOf();
-            LuaAI.processAnnotations(child, obj.getClass(), obj);
-
-            return child;
+            return new LuaObject(obj);
         } else if (obj instanceof GameObjectList) {
             GameObjectList<?> list = (GameObjectList) obj;
             if (list.size() == 0) {
                 return LuaValue.tableOf();
             }
-            LuaTable table = LuaValue.tableOf();
-            int index = 1;
-            for (GameObject i : list) {
-                LuaTable child = LuaValue.tableOf();
-                LuaAI.processAnnotations(child, i.getClass(), i);
-                table.set(index, child);
-                index++;
-            }
-            return table;
+            return new LuaList(list);
         } else if (obj instanceof Point) {
             Point p = (Point) obj;
             LuaTable table = LuaValue.tableOf();
@@ -258,31 +420,202 @@ public final class LuaAI {
         }
     }
 
-    static void processAnnotations(LuaTable table, Class<?> klass, Object obj) {
-        for (Method m : klass.getMethods()) {
-           if (m.isAnnotationPresent(ExportToLua.class)) {
-               table.set(m.getName(), new VarArgFunction() {
-                   @Override
-                   public Varargs invoke(Varargs args) {
-                       Object[] objArgs = new Object[args.narg()];
-                       if (args.narg() == 1) {
-                           objArgs[0] = fromLuaValue(args.arg1());
-                       } else {
-                           for (int i = 0; i < args.narg(); ++i) {
-                               objArgs[i] = fromLuaValue(args.arg(i + 1));
-                           }
-                       }
-                       Object result;
-                       try {
-                           result = m.invoke(obj, objArgs);
-                       } catch (Exception e) {
-                           throw new RuntimeException("Exception occurred invoking java method " + m + " with args " + Arrays.toString(objArgs), e);
-                       }
-                       return toLuaValue(result);
-                   }
-               });
-           }
+    /**
+     * The methods of a class exported to Lua, looked up once per class. The functions calling them on an object are
+     * created when a script first looks them up on that object.
+     */
+    private static final class LuaBinding {
+        private static final ClassValue<LuaBinding> BINDINGS = new ClassValue<LuaBinding>() {
+            @Override
+            protected LuaBinding computeValue(Class<?> type) {
+                return new LuaBinding(type);
+            }
+        };
+
+        private final String[] names;
+        private final Method[] methods;
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final LuaTable metatable = LuaValue.tableOf();
+
+        private LuaBinding(Class<?> klass) {
+            Map<String, Method> exported = new LinkedHashMap<>();
+            for (Method m : klass.getMethods()) {
+                if (m.isAnnotationPresent(ExportToLua.class)) {
+                    exported.put(m.getName(), m);
+                }
+            }
+            names = exported.keySet().toArray(new String[exported.size()]);
+            methods = exported.values().toArray(new Method[exported.size()]);
+            for (int i = 0; i < names.length; ++i) {
+                slots.put(names[i], i);
+            }
+
+            metatable.set(LuaValue.INDEX, new TwoArgFunction() {
+                @Override
+                public LuaValue call(LuaValue self, LuaValue key) {
+                    return ((LuaObject) self).exported(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * A Java object seen from Lua. Its exported methods are looked up through the metatable shared by all objects of
+     * its class, and called with a dot, as in {@code architecture.getName()}.
+     */
+    private static final class LuaObject extends LuaUserdata {
+        private final LuaBinding binding;
+        private LuaValue[] functions;
+
+        private LuaObject(Object obj) {
+            this(obj, LuaBinding.BINDINGS.get(obj.getClass()));
+        }
+
+        private LuaObject(Object obj, LuaBinding binding) {
+            super(obj, binding.metatable);
+            this.binding = binding;
+        }
+
+        private LuaValue exported(LuaValue key) {
+            Integer slot = key.isstring() ? binding.slots.get(key.tojstring()) : null;
+            if (slot == null) {
+                return NIL;
+            }
+            if (functions == null) {
+                functions = new LuaValue[binding.methods.length];
+            }
+            if (functions[slot] == null) {
+                functions[slot] = bind(binding.methods[slot], m_instance);
+            }
+            return functions[slot];
+        }
+    }
+
+    /**
+     * A game object list seen from Lua, as a table whose items are converted only when a script reads them. Its length
+     * is known without converting anything, and reading or iterating it in order converts items one at a time,
+     * straight from the list. Changing or sorting it converts all items first, after which it is an ordinary table.
+     * The list must not be changed by Java while the script still reads it; lists returned to Lua are copies.
+     */
+    private static final class LuaList extends LuaTable {
+        private final int size;
+        private Iterator<? extends GameObject> remaining;
+        private int converted;
+
+        private LuaList(GameObjectList<?> list) {
+            super(list.size(), 0);
+            this.size = list.size();
+            this.remaining = list.iterator();
+        }
+
+        /**
+         * Convert the items up to and including the given index
+         */
+        private void convert(int index) {
+            if (remaining == null) return;
+            while (converted < index && remaining.hasNext()) {
+                super.rawset(++converted, new LuaObject(remaining.next()));
+            }
+            if (!remaining.hasNext()) {
+                remaining = null;
+            }
+        }
+
+        private void convertAll() {
+            convert(size);
+        }
+
+        @Override
+        public LuaValue rawget(int key) {
+            convert(key);
+            return super.rawget(key);
+        }
+
+        @Override
+        public LuaValue rawget(LuaValue key) {
+            if (key.isinttype()) {
+                convert(key.toint());
+            }
+            return super.rawget(key);
+        }
+
+        @Override
+        public int rawlen() {
+            return remaining != null ? size : super.rawlen();
         }
+
+        @Override
+        public Varargs next(LuaValue key) {
+            if (key.isnil()) {
+                convert(1);
+            } else if (key.isinttype()) {
+                convert(key.toint() + 1);
+            } else {
+                convertAll();
+            }
+            return super.next(key);
+        }
+
+        @Override
+        public void rawset(int key, LuaValue value) {
+            convertAll();
+            super.rawset(key, value);
+        }
+
+        @Override
+        public void rawset(LuaValue key, LuaValue value) {
+            convertAll();
+            super.rawset(key, value);
+        }
+
+        @Override
+        public LuaValue remove(int pos) {
+            convertAll();
+            return super.remove(pos);
+        }
+
+        @Override
+        public void insert(int pos, LuaValue value) {
+            convertAll();
+            super.insert(pos, value);
+        }
+
+        @Override
+        public void sort(LuaValue comparator) {
+            convertAll();
+            super.sort(comparator);
+        }
+
+        @Override
+        public int keyCount() {
+            convertAll();
+            return super.keyCount();
+        }
+
+        @Override
+        public LuaValue[] keys() {
+            convertAll();
+            return super.keys();
+        }
+    }
+
+    private static LuaValue bind(Method m, Object obj) {
+        return new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                Object[] objArgs = new Object[args.narg()];
+                for (int i = 0; i < args.narg(); ++i) {
+                    objArgs[i] = fromLuaValue(args.arg(i + 1));
+                }
+                Object result;
+                try {
+                    result = m.invoke(obj, objArgs);
+                } catch (Exception e) {
+                    throw new RuntimeException("Exception occurred invoking java method " + m + " with args " + Arrays.toString(objArgs), e);
+                }
+                return toLuaValue(result);
+            }
+        };
     }
 
 }
@@ -25,7 +25,6 @@ import com.zhsan.lua.LuaAI;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -188,7 +187,10 @@ public class GameScreen extends WidgetGroup {
     public void showSaveGameFrame() {
         dayRunner.pauseRunDays();
         if (saveGameFrame == null) {
-            saveGameFrame = new FileGameFrame(FileGameFrame.Usage.SAVE, scen::save);
+            saveGameFrame = new FileGameFrame(FileGameFrame.Usage.SAVE, file -> scen.saveInBackground(file).exceptionally(e -> {
+                e.printStackTrace();
+                return null;
+            }));
             this.addActor(saveGameFrame);
         } else {
             saveGameFrame.show();
@@ -199,6 +201,7 @@ public class GameScreen extends WidgetGroup {
         dayRunner.pauseRunDays();
         if (loadGameFrame == null) {
             loadGameFrame = new FileGameFrame(FileGameFrame.Usage.LOAD, file -> {
+                GameScenario.finishSaves();
                 scen = new GameScenario(file, false, -1);
                 scen.setGameScenarioEventsListener(new ScreenScenarioEventsListener(this));
             });
@@ -268,27 +271,20 @@ public class GameScreen extends WidgetGroup {
         return personPortrait.getSmallPortrait(id);
     }
 
+    public void invalidateSmallMap(Architecture architecture) {
+        toolBar.invalidateSmallMap(architecture);
+    }
+
     public void addGameRecordsMessage(GameRecord.StringKeys msgName, String... objects) {
         toolBar.addRecord(msgName, objects);
     }
 
-    private ExecutorService pool = Executors.newCachedThreadPool();
     private void runAi() {
-        GameObjectList<Faction> factions = scen.getFactions();
-        List<Callable<Void>> runnables = new ArrayList<>();
+        GameObjectList<Faction> factions = scen.getFactions().filter(f -> f != scen.getCurrentPlayer());
         if (MULTITHREADED_AI) {
-            factions.filter(f -> f != scen.getCurrentPlayer()).forEach(f -> runnables.add(() -> {
-                f.ai();
-                return null;
-            }));
-
-            try {
-                pool.invokeAll(runnables, GlobalVariables.aiTimeout, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+            LuaAI.runFactionAis(scen, factions.getAll());
         } else {
-            factions.filter(f -> f != scen.getCurrentPlayer()).forEach(Faction::ai);
+            factions.forEach(Faction::ai);
         }
     }
 
@@ -360,17 +356,16 @@ public class GameScreen extends WidgetGroup {
                             });
                         }
                     });
-                    while (!mapLayer.isNoPendingTroopAnimations()){
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                            // no-op
-                        }
-                        // wait animation thread to clear its queue
-                    }
 
                     runAi();
 
+                    if (GlobalVariables.autoSaveDays > 0 && getScenario().getGameData().getDayPassed() % GlobalVariables.autoSaveDays == 0) {
+                        getScenario().autosave(Gdx.files.external(GameScenario.AUTOSAVE_PATH)).exceptionally(e -> {
+                            e.printStackTrace();
+                            return null;
+                        });
+                    }
+
                     synchronized (GameScreen.this) {
                         i -= moreDays;
                         if (days - i - 1 > GlobalVariables.maxRunningDays) {
@@ -453,6 +448,7 @@ public class GameScreen extends WidgetGroup {
             loadGameFrame.dispose();
         }
         LuaAI.dispose();
+        GameScenario.finishSaves();
     }
 
 }
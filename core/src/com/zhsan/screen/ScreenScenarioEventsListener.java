@@ -4,6 +4,7 @@ import com.zhsan.gamecomponents.toolbar.GameRecord;
 import com.zhsan.gameobject.Architecture;
 import com.zhsan.gameobject.Faction;
 import com.zhsan.gameobject.GameScenarioEventsListener;
+import com.zhsan.gameobject.Section;
 
 /**
  * Created by Peter on 6/12/2015.
@@ -24,4 +25,9 @@ public class ScreenScenarioEventsListener implements GameScenarioEventsListener
             screen.addGameRecordsMessage(GameRecord.StringKeys.OCCUPY_ARCHITECTURE_WITH_FACTION, oldFaction.getName(), newFaction.getName(), architecture.getName());
         }
     }
+
+    @Override
+    public void onArchitectureSectionChanged(Architecture architecture, Section oldSection, Section newSection) {
+        screen.invalidateSmallMap(architecture);
+    }
 }
@@ -0,0 +1,100 @@
+package com.zhsan.gameobject;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.zhsan.common.GlobalVariables;
+import com.zhsan.common.Point;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Persons arriving at an architecture without mayor on the same day, in the bundled 194QXGJ 7 scenario.
+ * Runs from the assets directory.
+ */
+public class PersonArrivalTest {
+
+    private static final String SCENARIO = "194QXGJ 7";
+    private static final long RANDOM_SEED = 0x5EEDL;
+
+    private static final GameScenario.OnTroopDone NO_ANIMATION = new GameScenario.OnTroopDone() {
+        @Override
+        public void onStartTroopStep(Troop t, Point oldLoc, Point newLoc, GameScenario.OnTroopAnimationDone onTroopAnimationDone) {
+            onTroopAnimationDone.onTroopAnimationDone();
+        }
+
+        @Override
+        public void onStartAttackStep(Troop t, HasPointLocationGameObject target, GameScenario.OnTroopAnimationDone onTroopAnimationDone) {
+            onTroopAnimationDone.onTroopAnimationDone();
+        }
+
+        @Override
+        public void onAttackDone(Troop t, HasPointLocationGameObject target, List<DamagePack> damagePacks) {
+            // no-op
+        }
+    };
+
+    @BeforeClass
+    public static void init() {
+        System.setProperty("user.home", ".");
+        new HeadlessApplication(new ApplicationAdapter() {}, new HeadlessApplicationConfiguration());
+        GlobalVariables.load();
+    }
+
+    /**
+     * Two persons of the faction, the one of higher id being abler, arrive at an architecture of the faction without
+     * any person the next day, and the day is advanced
+     * @return id of the mayor of that architecture
+     */
+    private static int mayorAfterArrivals(boolean parallelDayTick) {
+        boolean oldParallelDayTick = GlobalVariables.parallelDayTick;
+        GlobalVariables.parallelDayTick = parallelDayTick;
+        try {
+            GameScenario scen = new GameScenario(Gdx.files.external(GameScenario.SCENARIO_PATH + SCENARIO), true, 1);
+            scen.getGameData().setRandomSeed(RANDOM_SEED);
+
+            for (Architecture to : scen.getArchitectures()) {
+                Faction f = to.getBelongedFaction();
+                if (f == null || to.getPersons().size() > 0) continue;
+
+                List<Person> candidates = new ArrayList<>(f.getPersons()
+                        .filter(p -> p.getLocation() instanceof Architecture && p.getMovingDays() == 0 &&
+                                p.getDoingWorkType() != Person.DoingWork.MAYOR && p != f.getLeader())
+                        .getAll());
+                for (Person first : candidates) {
+                    for (Person second : candidates) {
+                        if (second.getId() <= first.getId() || second.getAbilitySum() <= first.getAbilitySum()) continue;
+
+                        first.moveToArchitecture(to.getPosition(), to);
+                        second.moveToArchitecture(to.getPosition(), to);
+                        assertEquals(1, first.getMovingDays());
+                        assertEquals(1, second.getMovingDays());
+
+                        scen.advanceDay(NO_ANIMATION);
+
+                        assertEquals(2, to.getPersons().size());
+                        assertEquals(1, to.getWorkingPersons(Person.DoingWork.MAYOR).size());
+                        // the first to arrive is the only one there when the mayor is picked
+                        assertEquals(first.getId(), to.getMayor().getId());
+                        return to.getMayor().getId();
+                    }
+                }
+            }
+            throw new AssertionError("No architecture to arrive at in " + SCENARIO);
+        } finally {
+            GlobalVariables.parallelDayTick = oldParallelDayTick;
+        }
+    }
+
+    @Test
+    public void sameMayorInParallelDayTick() {
+        assertEquals(mayorAfterArrivals(false), mayorAfterArrivals(true));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.zhsan.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.zhsan.common.GlobalVariables;
+import com.zhsan.common.Point;
+import com.zhsan.gameobject.*;
+import com.zhsan.lua.LuaAI;
+
+import java.util.List;
+
+/**
+ * Runs a scenario without any window or player, with all factions on AI and troop animations completing immediately,
+ * and reports how fast days pass. Run from the assets directory:
+ * HeadlessSimulator scenarioName [days]
+ */
+public class HeadlessSimulator {
+
+    public static final GameScenario.OnTroopDone NO_ANIMATION = new GameScenario.OnTroopDone() {
+        @Override
+        public void onStartTroopStep(Troop t, Point oldLoc, Point newLoc, GameScenario.OnTroopAnimationDone onTroopAnimationDone) {
+            onTroopAnimationDone.onTroopAnimationDone();
+        }
+
+        @Override
+        public void onStartAttackStep(Troop t, HasPointLocationGameObject target, GameScenario.OnTroopAnimationDone onTroopAnimationDone) {
+            onTroopAnimationDone.onTroopAnimationDone();
+        }
+
+        @Override
+        public void onAttackDone(Troop t, HasPointLocationGameObject target, List<DamagePack> damagePacks) {
+            // no-op
+        }
+    };
+
+    private final String scenarioName;
+    private final int days;
+
+    public HeadlessSimulator(String scenarioName, int days) {
+        this.scenarioName = scenarioName;
+        this.days = days;
+    }
+
+    public void run() {
+        GlobalVariables.load();
+
+        long loadStart = System.nanoTime();
+        FileHandle file = Gdx.files.external(GameScenario.SCENARIO_PATH + scenarioName);
+        GameScenario scen = new GameScenario(file, true, -1);
+        double loadSeconds = (System.nanoTime() - loadStart) / 1e9;
+        System.out.printf("Loaded %s in %.2fs: %d factions, %d architectures, %d persons%n", scenarioName, loadSeconds,
+                scen.getFactions().size(), scen.getArchitectures().size(), scen.getPersons().size());
+
+        long runStart = System.nanoTime();
+        for (int i = 0; i < days; ++i) {
+            scen.advanceDay(NO_ANIMATION);
+            LuaAI.runFactionAis(scen, scen.getFactions().getAll());
+        }
+        double runSeconds = (System.nanoTime() - runStart) / 1e9;
+
+        System.out.printf("Ran %d days in %.2fs, %.2f days/sec, now %s%n", days, runSeconds, days / runSeconds, scen.getGameDate());
+        System.out.printf("%d factions, %d troops, %d militaries%n",
+                scen.getFactions().size(), scen.getTroops().size(), scen.getMilitaries().size());
+        scen.getFactions().forEach(f -> System.out.printf("AI of faction %d: %s%n", f.getId(), LuaAI.getMetrics(f)));
+    }
+
+    public static void main(String[] arg) {
+        System.setProperty("user.home", ".");
+
+        if (arg.length < 1) {
+            System.err.println("Usage: HeadlessSimulator scenarioName [days]");
+            System.exit(1);
+        }
+        String scenarioName = arg[0];
+        int days = arg.length > 1 ? Integer.parseInt(arg[1]) : 99;
+
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                try {
+                    new HeadlessSimulator(scenarioName, days).run();
+                } finally {
+                    Gdx.app.exit();
+                }
+            }
+        }, new HeadlessApplicationConfiguration());
+    }
+
+}